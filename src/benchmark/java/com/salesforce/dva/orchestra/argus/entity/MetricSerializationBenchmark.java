@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus.entity;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the number of 1000 metric chunks per second serialized to JSON using the mapper configuration of the web service client.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MetricSerializationBenchmark {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final int METRICS = 1000;
+    private static final int DATAPOINTS = 10;
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Metric> chunk = new ArrayList<>(METRICS);
+    private final OutputStream discard = new OutputStream() {
+
+            @Override
+            public void write(int b) { }
+
+            @Override
+            public void write(byte[] b, int off, int len) { }
+        };
+
+    //~ Methods **************************************************************************************************************************************
+
+    /** Configures the mapper and creates the chunk of metrics. */
+    @Setup
+    public void setUp() {
+        mapper.setVisibility(PropertyAccessor.GETTER, Visibility.ANY);
+        mapper.setVisibility(PropertyAccessor.SETTER, Visibility.ANY);
+        for (int i = 0; i < METRICS; i++) {
+            Metric metric = new Metric("argus.prod.na" + (i % 4), "count");
+
+            metric.setTag("host", "host" + i + ".example.com");
+            metric.setTag("pod", "pod" + (i % 8));
+            metric.setTag("role", "app");
+            metric.setDisplayName("Request count");
+            metric.setUnits("requests");
+            for (int j = 0; j < DATAPOINTS; j++) {
+                metric.addDatapoint(1475280000000L + j * 60000L, String.valueOf(i + j));
+            }
+            chunk.add(metric);
+        }
+    }
+
+    /**
+     * Serializes the chunk of metrics.
+     *
+     * @throws  IOException  If serialization fails.
+     */
+    @Benchmark
+    public void serializeChunk() throws IOException {
+        mapper.writeValue(discard, chunk);
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
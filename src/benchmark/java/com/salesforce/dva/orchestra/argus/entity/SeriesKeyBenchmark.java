@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the number of series lookups per second performed while grouping parsed events, comparing series keys with metrics used as map keys.
+ * Every event carries its own string instances, as events read from a result set do, and falls into one of a fixed number of series.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SeriesKeyBenchmark {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final int EVENTS = 10000;
+    private static final int SERIES = 200;
+    private static final String METRIC = "count";
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final String[] scopes = new String[EVENTS];
+    private final Map<String, String>[] tags = _tagMaps(EVENTS);
+    private final Map<SeriesKey, Metric> keyed = new HashMap<>();
+    private final Map<Metric, Metric> entities = new HashMap<>();
+
+    //~ Methods **************************************************************************************************************************************
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String>[] _tagMaps(int count) {
+        return new Map[count];
+    }
+
+    /** Creates the events and populates the series maps. */
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < EVENTS; i++) {
+            int series = i % SERIES;
+
+            scopes[i] = new String("argus.prod.na" + (series % 4));
+            tags[i] = new HashMap<>();
+            tags[i].put(new String("host"), new String("host" + series + ".example.com"));
+            tags[i].put(new String("pod"), new String("pod" + (series % 8)));
+            tags[i].put(new String("role"), new String("app"));
+            if (i < SERIES) {
+                Metric metric = new Metric(scopes[i], METRIC);
+
+                metric.setTags(tags[i]);
+                keyed.put(SeriesKey.of(scopes[i], METRIC, tags[i]), metric);
+                entities.put(metric, metric);
+            }
+        }
+    }
+
+    /**
+     * Looks up the series of each event by its series key.
+     *
+     * @param  blackhole  The sink for the series found.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void seriesKey(Blackhole blackhole) {
+        for (int i = 0; i < EVENTS; i++) {
+            blackhole.consume(keyed.get(SeriesKey.of(scopes[i], METRIC, tags[i])));
+        }
+    }
+
+    /**
+     * Looks up the series of each event by a metric built for the event, as the parsers formerly did.
+     *
+     * @param  blackhole  The sink for the series found.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void metric(Blackhole blackhole) {
+        for (int i = 0; i < EVENTS; i++) {
+            Metric metric = new Metric(scopes[i], METRIC);
+
+            metric.setTags(tags[i]);
+            blackhole.consume(entities.get(metric));
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
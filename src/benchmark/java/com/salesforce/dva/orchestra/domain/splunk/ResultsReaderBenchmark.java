@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.OutputMode;
+import com.splunk.Event;
+import com.splunk.ResultsReader;
+import com.splunk.ResultsReaderCsv;
+import com.splunk.ResultsReaderJson;
+import com.splunk.ResultsReaderXml;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the number of Splunk result events read per second on a single thread for each result output format. The payloads reproduce the
+ * documents returned by the results endpoint of a search job for a typical metric query.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ResultsReaderBenchmark {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final int EVENTS = 10000;
+    private static final String[] FIELDS = { "_time", "host", "pod", "count", "avg_latency", "p95_latency" };
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    /** The name of the output format measured. */
+    @Param({ "XML", "JSON", "CSV" })
+    public String format;
+    private OutputMode outputMode;
+    private byte[] payload;
+
+    //~ Methods **************************************************************************************************************************************
+
+    private static String _value(int event, int field) {
+        switch (field) {
+            case 0:
+                return "2016-10-01T00:" + String.format("%02d:%02d", (event / 60) % 60, event % 60) + ".000+00:00";
+            case 1:
+                return "host" + (event % 200) + ".example.com";
+            case 2:
+                return "pod" + (event % 8);
+            default:
+                return String.valueOf((event * 31 + field) % 1000 + 0.25);
+        }
+    }
+
+    private static byte[] _xml() {
+        StringBuilder result = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<results preview='0'>\n<meta>\n<fieldOrder>\n");
+
+        for (String field : FIELDS) {
+            result.append("<field>").append(field).append("</field>\n");
+        }
+        result.append("</fieldOrder>\n</meta>\n");
+        for (int i = 0; i < EVENTS; i++) {
+            result.append("<result offset='").append(i).append("'>\n");
+            for (int j = 0; j < FIELDS.length; j++) {
+                result.append("\t<field k='").append(FIELDS[j]).append("'>\n\t\t<value><text>").append(_value(i, j)).append(
+                    "</text></value>\n\t</field>\n");
+            }
+            result.append("</result>\n");
+        }
+        return result.append("</results>\n").toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    private static byte[] _json() {
+        StringBuilder result = new StringBuilder("{\"preview\":false,\"init_offset\":0,\"messages\":[],\"fields\":[");
+
+        for (int j = 0; j < FIELDS.length; j++) {
+            result.append(j > 0 ? "," : "").append("{\"name\":\"").append(FIELDS[j]).append("\"}");
+        }
+        result.append("],\"results\":[");
+        for (int i = 0; i < EVENTS; i++) {
+            result.append(i > 0 ? ",{" : "{");
+            for (int j = 0; j < FIELDS.length; j++) {
+                result.append(j > 0 ? "," : "").append('"').append(FIELDS[j]).append("\":\"").append(_value(i, j)).append('"');
+            }
+            result.append('}');
+        }
+        return result.append("]}").toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    private static byte[] _csv() {
+        StringBuilder result = new StringBuilder();
+
+        for (int j = 0; j < FIELDS.length; j++) {
+            result.append(j > 0 ? "," : "").append('"').append(FIELDS[j]).append('"');
+        }
+        result.append('\n');
+        for (int i = 0; i < EVENTS; i++) {
+            for (int j = 0; j < FIELDS.length; j++) {
+                result.append(j > 0 ? "," : "").append('"').append(_value(i, j)).append('"');
+            }
+            result.append('\n');
+        }
+        return result.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    /** Builds the payload of the output format being measured. */
+    @Setup
+    public void setUp() {
+        outputMode = OutputMode.valueOf(format);
+        switch (outputMode) {
+            case JSON:
+                payload = _json();
+                break;
+            case CSV:
+                payload = _csv();
+                break;
+            default:
+                payload = _xml();
+        }
+    }
+
+    /**
+     * Reads every event of the payload and each of its fields.
+     *
+     * @param   blackhole  The sink for the values read.
+     *
+     * @throws  IOException  If the payload cannot be read.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void readEvents(Blackhole blackhole) throws IOException {
+        try(ResultsReader reader = _open(new ByteArrayInputStream(payload))) {
+            for (Event event : reader) {
+                for (String field : FIELDS) {
+                    blackhole.consume(event.get(field));
+                }
+            }
+        }
+    }
+
+    /* Creates the results reader matching the output mode in the same way as the service. */
+    private ResultsReader _open(InputStream results) throws IOException {
+        switch (outputMode) {
+            case JSON:
+                return new ResultsReaderJson(results);
+            case CSV:
+                return new ResultsReaderCsv(results);
+            default:
+                return new ResultsReaderXml(results);
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.splunk.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the number of events per second for which a scope is rendered from a substitution pattern, comparing the compiled template with the
+ * regular expression replacement it superseded.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SubstitutionTemplateBenchmark {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final int EVENTS = 10000;
+    private static final String PATTERN = "argus.$param.0$.$param.1$.$key.0$.$key.1$";
+    private static final List<String> PARAMS = Arrays.asList("prod", "na1");
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final Map<String, String> keyMap = new HashMap<>();
+    private final List<Event> events = new ArrayList<>(EVENTS);
+    private final StringBuilder buffer = new StringBuilder();
+    private SubstitutionTemplate template;
+
+    //~ Methods **************************************************************************************************************************************
+
+    /** Compiles the template and creates events having distinct key values. */
+    @Setup
+    public void setUp() {
+        keyMap.put("0", "host");
+        keyMap.put("1", "pod");
+        template = new SubstitutionTemplate(PATTERN, keyMap);
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(SplunkEvents.of("host", "host" + (i % 200) + ".example.com", "pod", "pod" + (i % 8), "count", String.valueOf(i)));
+        }
+    }
+
+    /**
+     * Renders the scope of each event using the compiled template.
+     *
+     * @param  blackhole  The sink for the rendered scopes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void render(Blackhole blackhole) {
+        for (Event event : events) {
+            blackhole.consume(template.render(event, PARAMS, buffer));
+        }
+    }
+
+    /**
+     * Renders the scope of each event by compiling and applying a regular expression for every reference, as the parser formerly did.
+     *
+     * @param  blackhole  The sink for the rendered scopes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void replaceAll(Blackhole blackhole) {
+        for (Event event : events) {
+            String result = PATTERN;
+
+            for (int i = 0; i < PARAMS.size(); i++) {
+                result = result.replaceAll("\\$param\\." + i + "\\$", PARAMS.get(i));
+            }
+            for (Map.Entry<String, String> keyEntry : keyMap.entrySet()) {
+                result = result.replaceAll("\\$key\\." + Integer.parseInt(keyEntry.getKey()) + "\\$", event.get(keyEntry.getValue()));
+            }
+            blackhole.consume(result);
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
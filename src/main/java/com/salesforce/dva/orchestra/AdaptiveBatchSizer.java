@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * Determines the target size in estimated bytes of the batches submitted to Argus. The target is adapted using additive increase, multiplicative
+ * decrease (AIMD): each batch completing within the target latency grows the target by the minimum batch size, while a slow or failed batch
+ * halves it. Batches already submitted when the target is decreased were sized for the previous target, so their outcomes are not used to adjust
+ * it again. Batches are additionally capped by a maximum number of datapoints regardless of their estimated size.
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class AdaptiveBatchSizer {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveBatchSizer.class);
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final String name;
+    private final long minBytes;
+    private final long maxBytes;
+    private final int maxDatapoints;
+    private final long targetLatencyMillis;
+    private long targetBytes;
+    private long submitted = 0;
+    private long fence = 0;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new AdaptiveBatchSizer object. The initial target is a quarter of the maximum batch size, but not less than the minimum.
+     *
+     * @param  name                 The name of the batched entity type used for logging. Cannot be null.
+     * @param  minBytes             The minimum target batch size in estimated bytes. Must be greater than zero.
+     * @param  maxBytes             The maximum target batch size in estimated bytes. Cannot be less than the minimum.
+     * @param  maxDatapoints        The maximum number of datapoints in a batch. Must be greater than zero.
+     * @param  targetLatencyMillis  The request latency in milliseconds above which the target is decreased. Must be greater than zero.
+     */
+    AdaptiveBatchSizer(String name, long minBytes, long maxBytes, int maxDatapoints, long targetLatencyMillis) {
+        requireArgument((this.name = name) != null, "Name cannot be null.");
+        requireArgument((this.minBytes = minBytes) > 0, "The minimum batch size must be greater than zero.");
+        requireArgument((this.maxBytes = maxBytes) >= minBytes, "The maximum batch size cannot be less than the minimum batch size.");
+        requireArgument((this.maxDatapoints = maxDatapoints) > 0, "The maximum number of datapoints per batch must be greater than zero.");
+        requireArgument((this.targetLatencyMillis = targetLatencyMillis) > 0, "The target latency must be greater than zero.");
+        targetBytes = Math.max(minBytes, maxBytes / 4);
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Returns the current target batch size.
+     *
+     * @return  The target batch size in estimated bytes.
+     */
+    synchronized long getTargetBytes() {
+        return targetBytes;
+    }
+
+    /**
+     * Returns the maximum number of datapoints in a batch.
+     *
+     * @return  The maximum number of datapoints.
+     */
+    int getMaxDatapoints() {
+        return maxDatapoints;
+    }
+
+    /**
+     * Records the submission of a batch.
+     *
+     * @return  The ticket identifying the batch when reporting its outcome.
+     */
+    synchronized long onSubmit() {
+        return ++submitted;
+    }
+
+    /**
+     * Records the successful completion of a batch.
+     *
+     * @param  ticket         The ticket returned when the batch was submitted.
+     * @param  latencyMillis  The time taken to submit the batch in milliseconds.
+     */
+    synchronized void onSuccess(long ticket, long latencyMillis) {
+        if (latencyMillis > targetLatencyMillis) {
+            _decrease(ticket, "latency of " + latencyMillis + "ms");
+        } else if (ticket > fence && targetBytes < maxBytes) {
+            targetBytes = Math.min(maxBytes, targetBytes + minBytes);
+            LOGGER.debug("Increased the {} batch target to {} bytes.", name, targetBytes);
+        }
+    }
+
+    /**
+     * Records the failure of a batch.
+     *
+     * @param  ticket  The ticket returned when the batch was submitted.
+     */
+    synchronized void onFailure(long ticket) {
+        _decrease(ticket, "failure");
+    }
+
+    private void _decrease(long ticket, String reason) {
+        if (ticket <= fence) {
+            return;
+        }
+        targetBytes = Math.max(minBytes, targetBytes / 2);
+        fence = submitted;
+        LOGGER.info("Decreased the {} batch target to {} bytes after a {}.", name, targetBytes, reason);
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salesforce.dva.orchestra.argus.entity.Annotation;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes metric and annotation batches as JSON for storage in the spool. The encoding uses the same property visibility as the Argus HTTP client,
+ * so a batch read back from the spool is identical to the batch originally collected.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+final class BatchCodec {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<Metric>> METRICS = new TypeReference<List<Metric>>() { };
+    private static final TypeReference<List<Annotation>> ANNOTATIONS = new TypeReference<List<Annotation>>() { };
+
+    static {
+        MAPPER.setVisibility(PropertyAccessor.GETTER, Visibility.ANY);
+        MAPPER.setVisibility(PropertyAccessor.SETTER, Visibility.ANY);
+        MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /* Private constructor to prevent instantiation. */
+    private BatchCodec() {
+        assert (false) : "This class should never be instantiated.";
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Encodes a batch.
+     *
+     * @param   batch  The batch to encode. Cannot be null.
+     *
+     * @return  The encoded batch.
+     */
+    static byte[] encode(List<?> batch) {
+        try {
+            return MAPPER.writeValueAsBytes(batch);
+        } catch (IOException ex) {
+            throw new OrchestraException(ex);
+        }
+    }
+
+    /**
+     * Decodes a batch of metrics.
+     *
+     * @param   payload  The encoded batch. Cannot be null.
+     *
+     * @return  The decoded metrics.
+     */
+    static List<Metric> decodeMetrics(byte[] payload) {
+        return _decode(payload, METRICS);
+    }
+
+    /**
+     * Decodes a batch of annotations.
+     *
+     * @param   payload  The encoded batch. Cannot be null.
+     *
+     * @return  The decoded annotations.
+     */
+    static List<Annotation> decodeAnnotations(byte[] payload) {
+        return _decode(payload, ANNOTATIONS);
+    }
+
+    private static <T> List<T> _decode(byte[] payload, TypeReference<List<T>> type) {
+        try {
+            return MAPPER.readValue(payload, type);
+        } catch (IOException ex) {
+            throw new OrchestraException("Could not decode a spooled batch.", ex);
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import com.salesforce.dva.orchestra.argus.ArgusService;
+import com.salesforce.dva.orchestra.argus.entity.Annotation;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.salesforce.dva.orchestra.spool.Spool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * Submits metric and annotation batches to Argus with a bounded number of batches in flight. Once the limit is reached, submitting another batch
+ * blocks the caller until an in flight batch completes. This back pressure propagates through the collector queues to the reader. Batches are
+ * numbered in submission order and their completion is accounted for in that order, regardless of the order in which the requests finish. The
+ * latency or failure of each batch is reported to the batch sizer for its entity type.
+ *
+ * <p>If a spool is provided, each batch is durably appended to it before being submitted and acknowledged once Argus has accepted it. Batches
+ * recovered from the spool can be replayed through the submitter, and batches which could not be submitted can be retained in the spool for the
+ * next run. A replayed batch which fails is moved to the dead letters of the spool rather than failing the run, so that a batch which cannot be
+ * delivered does not prevent the current and subsequent runs from collecting.</p>
+ *
+ * <p>Entities which Argus rejects individually are dropped by the service without failing their batch. The submitter counts them so that the
+ * caller can avoid committing the progress of a run which lost data.</p>
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class BatchSubmitter {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchSubmitter.class);
+    private static final AtomicInteger ID = new AtomicInteger(1);
+    private static final byte METRIC_RECORD = 1;
+    private static final byte ANNOTATION_RECORD = 2;
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final ArgusService service;
+    private final Spool spool;
+    private final AdaptiveBatchSizer metricSizer;
+    private final AdaptiveBatchSizer annotationSizer;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private final TreeSet<Long> completedAhead = new TreeSet<>();
+    private long submitted = 0;
+    private long completedThrough = 0;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new BatchSubmitter object.
+     *
+     * @param  service          The Argus service used to submit batches. Cannot be null.
+     * @param  maxInFlight      The maximum number of batches that may be in flight at once. Must be greater than zero.
+     * @param  metricSizer      The sizer notified of the outcome of each metric batch. Cannot be null.
+     * @param  annotationSizer  The sizer notified of the outcome of each annotation batch. Cannot be null.
+     */
+    BatchSubmitter(ArgusService service, int maxInFlight, AdaptiveBatchSizer metricSizer, AdaptiveBatchSizer annotationSizer) {
+        this(service, maxInFlight, metricSizer, annotationSizer, null);
+    }
+
+    /**
+     * Creates a new BatchSubmitter object which records batches in a spool until they are accepted.
+     *
+     * @param  service          The Argus service used to submit batches. Cannot be null.
+     * @param  maxInFlight      The maximum number of batches that may be in flight at once. Must be greater than zero.
+     * @param  metricSizer      The sizer notified of the outcome of each metric batch. Cannot be null.
+     * @param  annotationSizer  The sizer notified of the outcome of each annotation batch. Cannot be null.
+     * @param  spool            The spool in which batches are recorded. May be null to disable spooling.
+     */
+    BatchSubmitter(ArgusService service, int maxInFlight, AdaptiveBatchSizer metricSizer, AdaptiveBatchSizer annotationSizer, Spool spool) {
+        requireArgument((this.service = service) != null, "The Argus service cannot be null.");
+        this.spool = spool;
+        requireArgument((this.metricSizer = metricSizer) != null, "The metric batch sizer cannot be null.");
+        requireArgument((this.annotationSizer = annotationSizer) != null, "The annotation batch sizer cannot be null.");
+        requireArgument((this.maxInFlight = maxInFlight) > 0, "The maximum number of batches in flight must be greater than zero.");
+        permits = new Semaphore(maxInFlight);
+
+        final int id = ID.getAndIncrement();
+
+        executor = Executors.newFixedThreadPool(maxInFlight, new ThreadFactory() {
+
+                    private final AtomicInteger worker = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "collectclient-submitter-" + id + "-" + worker.getAndIncrement());
+                    }
+                });
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Submits a batch of metrics, blocking while the maximum number of batches are in flight. The submitter takes ownership of the batch.
+     *
+     * @param   batch  The metrics to submit. Cannot be null or empty and must not be modified by the caller after submission.
+     *
+     * @throws  InterruptedException  If the caller is interrupted while waiting for an in flight batch to complete.
+     * @throws  OrchestraException    If a previously submitted batch failed.
+     */
+    void submitMetrics(List<Metric> batch) throws InterruptedException {
+        _submitMetrics(batch, _append(METRIC_RECORD, batch), false);
+    }
+
+    /**
+     * Submits a batch of annotations, blocking while the maximum number of batches are in flight. The submitter takes ownership of the batch.
+     *
+     * @param   batch  The annotations to submit. Cannot be null or empty and must not be modified by the caller after submission.
+     *
+     * @throws  InterruptedException  If the caller is interrupted while waiting for an in flight batch to complete.
+     * @throws  OrchestraException    If a previously submitted batch failed.
+     */
+    void submitAnnotations(List<Annotation> batch) throws InterruptedException {
+        _submitAnnotations(batch, _append(ANNOTATION_RECORD, batch), false);
+    }
+
+    /**
+     * Submits a batch recovered from the spool, blocking while the maximum number of batches are in flight. The record is acknowledged once the
+     * batch is accepted. A record which cannot be decoded, or whose batch fails to be submitted, is logged and moved to the dead letters of the
+     * spool. Such a failure does not fail the run, and entities rejected by Argus from a replayed batch are not counted as rejected by this run.
+     *
+     * @param   record  The spooled record to submit. Cannot be null.
+     *
+     * @throws  InterruptedException  If the caller is interrupted while waiting for an in flight batch to complete.
+     * @throws  OrchestraException    If a previously submitted batch failed.
+     */
+    void replay(Spool.Record record) throws InterruptedException {
+        requireArgument(spool != null, "Cannot replay a record without a spool.");
+        try {
+            switch (record.getKind()) {
+                case METRIC_RECORD:
+                    _submitMetrics(BatchCodec.decodeMetrics(record.getPayload()), record, true);
+                    break;
+                case ANNOTATION_RECORD:
+                    _submitAnnotations(BatchCodec.decodeAnnotations(record.getPayload()), record, true);
+                    break;
+                default:
+                    throw new OrchestraException("Unknown spooled record kind: " + record.getKind());
+            }
+        } catch (OrchestraException ex) {
+            if (failure.get() != null) {
+                throw ex;
+            }
+            _deadLetter(record, ex);
+        }
+    }
+
+    /**
+     * Records a batch of metrics in the spool without submitting it, so that it is delivered by the next run. Has no effect if spooling is
+     * disabled.
+     *
+     * @param  batch  The metrics to retain. Cannot be null or empty.
+     */
+    void retainMetrics(List<Metric> batch) {
+        _append(METRIC_RECORD, batch);
+    }
+
+    /**
+     * Records a batch of annotations in the spool without submitting it, so that it is delivered by the next run. Has no effect if spooling is
+     * disabled.
+     *
+     * @param  batch  The annotations to retain. Cannot be null or empty.
+     */
+    void retainAnnotations(List<Annotation> batch) {
+        _append(ANNOTATION_RECORD, batch);
+    }
+
+    /**
+     * Waits for all in flight batches to complete.
+     *
+     * @param   deadline  The time in epoch milliseconds after which to stop waiting.
+     *
+     * @return  True if all submitted batches completed before the deadline.
+     *
+     * @throws  InterruptedException  If the caller is interrupted while waiting.
+     * @throws  OrchestraException    If a submitted batch failed.
+     */
+    boolean awaitCompletion(long deadline) throws InterruptedException {
+        boolean completed = permits.tryAcquire(maxInFlight, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+
+        if (completed) {
+            permits.release(maxInFlight);
+        } else {
+            LOGGER.warn("Timed out waiting for {} in flight batches to complete.", maxInFlight - permits.availablePermits());
+        }
+        _checkFailure();
+        return completed;
+    }
+
+    /**
+     * Returns the sequence number through which all submitted batches have completed.
+     *
+     * @return  The highest sequence number for which it and all preceding batches have completed.
+     */
+    synchronized long getCompletedThrough() {
+        return completedThrough;
+    }
+
+    /**
+     * Returns the number of entities which Argus rejected and which were dropped from otherwise accepted batches.
+     *
+     * @return  The number of rejected entities.
+     */
+    long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /** Stops the submission threads. Batches which are still in flight are interrupted. */
+    void close() {
+        executor.shutdownNow();
+    }
+
+    private void _submitMetrics(final List<Metric> batch, Spool.Record record, final boolean replayed) throws InterruptedException {
+        _submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    int count = service.put(batch).size();
+
+                    if (!replayed) {
+                        rejected.addAndGet(count);
+                    }
+                }
+            }, batch.size(), "metric", metricSizer, record, replayed);
+    }
+
+    private void _submitAnnotations(final List<Annotation> batch, Spool.Record record, final boolean replayed) throws InterruptedException {
+        _submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    int count = service.putAnnotations(batch).size();
+
+                    if (!replayed) {
+                        rejected.addAndGet(count);
+                    }
+                }
+            }, batch.size(), "annotation", annotationSizer, record, replayed);
+    }
+
+    /* Moves a spooled batch which could not be replayed to the dead letters.  If that fails, the batch is replayed again by the next run. */
+    private void _deadLetter(Spool.Record record, Exception cause) {
+        LOGGER.error("Moving a spooled batch which could not be replayed to the dead letters.", cause);
+        try {
+            spool.deadLetter(record);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Could not move a spooled batch to the dead letters.", ex);
+        }
+    }
+
+    private Spool.Record _append(byte kind, List<?> batch) {
+        if (spool == null) {
+            return null;
+        }
+        try {
+            return spool.append(kind, BatchCodec.encode(batch));
+        } catch (IOException ex) {
+            throw new OrchestraException("Could not record a batch in the spool.", ex);
+        }
+    }
+
+    private void _submit(final Runnable request, final int size, final String kind, final AdaptiveBatchSizer sizer, final Spool.Record record,
+        final boolean replayed) throws InterruptedException {
+        _checkFailure();
+        permits.acquire();
+
+        final long sequence;
+        final long ticket = sizer.onSubmit();
+
+        synchronized (this) {
+            sequence = ++submitted;
+        }
+        try {
+            executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        long start = System.currentTimeMillis();
+
+                        try {
+                            request.run();
+
+                            long elapsed = System.currentTimeMillis() - start;
+
+                            sizer.onSuccess(ticket, elapsed);
+                            if (record != null) {
+                                spool.acknowledge(record);
+                            }
+                            LOGGER.debug("Submitted {} batch {} of {} entities in {}ms.", kind, sequence, size, elapsed);
+                        } catch (RuntimeException ex) {
+                            sizer.onFailure(ticket);
+                            if (replayed) {
+                                _deadLetter(record, ex);
+                            } else {
+                                failure.compareAndSet(null, ex);
+                            }
+                        } finally {
+                            _complete(sequence);
+                            permits.release();
+                        }
+                    }
+                });
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private synchronized void _complete(long sequence) {
+        if (sequence != completedThrough + 1) {
+            completedAhead.add(sequence);
+            return;
+        }
+        completedThrough = sequence;
+        while (!completedAhead.isEmpty() && completedAhead.first() == completedThrough + 1) {
+            completedThrough = completedAhead.pollFirst();
+        }
+    }
+
+    private void _checkFailure() {
+        RuntimeException ex = failure.get();
+
+        if (ex != null) {
+            throw new OrchestraException("A batch submission to Argus failed.", ex);
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -33,26 +33,52 @@ package com.salesforce.dva.orchestra;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import com.salesforce.dva.orchestra.argus.ArgusService;
+import com.salesforce.dva.orchestra.argus.SizeEstimator;
 import com.salesforce.dva.orchestra.argus.entity.Annotation;
 import com.salesforce.dva.orchestra.argus.entity.Metric;
 import com.salesforce.dva.orchestra.domain.DomainReader;
 import com.salesforce.dva.orchestra.domain.internal.UnitTestReader;
 import com.salesforce.dva.orchestra.domain.splunk.SplunkNativeReader;
+import com.salesforce.dva.orchestra.spool.Spool;
+import com.salesforce.dva.orchestra.util.BoundedQueue;
 import com.salesforce.dva.orchestra.util.Configuration;
 import com.salesforce.dva.orchestra.util.Option;
 import org.slf4j.LoggerFactory;
+import java.io.File;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.salesforce.dva.orchestra.argus.ArgusService.getInstance;
 import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_COMPRESSION;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_COMPRESSION_LEVEL;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_COMPRESSION_THRESHOLD;
 import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_ENDPOINT;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_MAX_INFLIGHT;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_RETRY_ATTEMPTS;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_RETRY_BUDGET;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_RETRY_DELAY;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.ARGUSWS_RETRY_MAX_DELAY;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_BATCH_MAX_BYTES;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_BATCH_MAX_DATAPOINTS;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_BATCH_MIN_BYTES;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_BATCH_TARGET_LATENCY;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_COALESCE;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_COALESCE_CONFLICT;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_QUEUE_BLOCKING;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_QUEUE_BYTES;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_QUEUE_CAPACITY;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_SPOOL_DIR;
+import static com.salesforce.dva.orchestra.util.Configuration.Parameter.COLLECTOR_SPOOL_SEGMENT_BYTES;
 import static com.salesforce.dva.orchestra.util.Option.findOption;
 
 /**
@@ -88,14 +114,53 @@ public class Collector {
     }
 
     private static final long TIMEOUT_INTERVAL_MS = 14400000;
-    private static final long POLL_INTERVAL_MS = 500;
+    private static final long LINGER_INTERVAL_MS = 250;
     private static final int CHUNK_SIZE = 1000;
     private static final AtomicInteger ID = new AtomicInteger(1);
+    private static final BoundedQueue.Weigher<Metric> METRIC_WEIGHER = new BoundedQueue.Weigher<Metric>() {
+
+            @Override
+            public long weigh(Metric element) {
+                return SizeEstimator.estimate(element);
+            }
+        };
+    private static final BoundedQueue.Weigher<Annotation> ANNOTATION_WEIGHER = new BoundedQueue.Weigher<Annotation>() {
+
+            @Override
+            public long weigh(Annotation element) {
+                return SizeEstimator.estimate(element);
+            }
+        };
+    private static final BoundedQueue.Weigher<Metric> METRIC_DATAPOINTS = new BoundedQueue.Weigher<Metric>() {
+
+            @Override
+            public long weigh(Metric element) {
+                return element.getDatapointCount();
+            }
+        };
+    private static final BoundedQueue.Weigher<Annotation> ANNOTATION_DATAPOINTS = new BoundedQueue.Weigher<Annotation>() {
+
+            @Override
+            public long weigh(Annotation element) {
+                return 1;
+            }
+        };
 
     //~ Instance fields ******************************************************************************************************************************
 
     private final String type;
     private final long timeoutMillis;
+    private final int maxInFlight;
+    private final int queueCapacity;
+    private final long queueBytes;
+    private final boolean queueBlocking;
+    private final long batchMinBytes;
+    private final long batchMaxBytes;
+    private final int batchMaxDatapoints;
+    private final long batchTargetLatency;
+    private final MetricCoalescer coalescer;
+    private final File spoolDirectory;
+    private final int spoolSegmentBytes;
     private ArgusService service;
 
     //~ Constructors *********************************************************************************************************************************
@@ -127,7 +192,43 @@ public class Collector {
         try {
             requireArgument((this.type = type) != null && READERS.keySet().contains(type), "Invalid reader type.");
             requireArgument((this.timeoutMillis = timeoutMillis) > 0, "The timeout in seconds must be greater than zero.");
-            service = getInstance(Configuration.getParameter(ARGUSWS_ENDPOINT), 10, preview);
+            maxInFlight = Integer.parseInt(Configuration.getParameter(ARGUSWS_MAX_INFLIGHT));
+            requireArgument(maxInFlight > 0, "The maximum number of batches in flight must be greater than zero.");
+            queueCapacity = Integer.parseInt(Configuration.getParameter(COLLECTOR_QUEUE_CAPACITY));
+            queueBytes = Long.parseLong(Configuration.getParameter(COLLECTOR_QUEUE_BYTES));
+            queueBlocking = Boolean.parseBoolean(Configuration.getParameter(COLLECTOR_QUEUE_BLOCKING));
+            requireArgument(queueCapacity > 0 && queueBytes > 0, "The collector queue capacity and size must be greater than zero.");
+            batchMinBytes = Long.parseLong(Configuration.getParameter(COLLECTOR_BATCH_MIN_BYTES));
+            batchMaxBytes = Long.parseLong(Configuration.getParameter(COLLECTOR_BATCH_MAX_BYTES));
+            batchMaxDatapoints = Integer.parseInt(Configuration.getParameter(COLLECTOR_BATCH_MAX_DATAPOINTS));
+            batchTargetLatency = Long.parseLong(Configuration.getParameter(COLLECTOR_BATCH_TARGET_LATENCY));
+            requireArgument(batchMinBytes > 0 && batchMaxBytes >= batchMinBytes, "The batch size limits are invalid.");
+            requireArgument(batchMaxDatapoints > 0 && batchTargetLatency > 0,
+                "The batch datapoint limit and target latency must be greater than zero.");
+            if (Boolean.parseBoolean(Configuration.getParameter(COLLECTOR_COALESCE))) {
+                coalescer = new MetricCoalescer(MetricCoalescer.Conflict.fromName(Configuration.getParameter(COLLECTOR_COALESCE_CONFLICT)));
+            } else {
+                coalescer = null;
+            }
+
+            String spoolDir = Configuration.getParameter(COLLECTOR_SPOOL_DIR);
+
+            spoolDirectory = (preview || spoolDir.trim().isEmpty()) ? null : new File(spoolDir.trim(), type);
+            spoolSegmentBytes = Integer.parseInt(Configuration.getParameter(COLLECTOR_SPOOL_SEGMENT_BYTES));
+            requireArgument(spoolSegmentBytes > 0, "The spool segment size must be greater than zero.");
+            service = getInstance(Configuration.getParameter(ARGUSWS_ENDPOINT), Math.max(10, maxInFlight * 2), preview);
+            if (Boolean.parseBoolean(Configuration.getParameter(ARGUSWS_COMPRESSION))) {
+                service.enableCompression(Integer.parseInt(Configuration.getParameter(ARGUSWS_COMPRESSION_LEVEL)),
+                    Long.parseLong(Configuration.getParameter(ARGUSWS_COMPRESSION_THRESHOLD)));
+            }
+
+            int retryBudget = Integer.parseInt(Configuration.getParameter(ARGUSWS_RETRY_BUDGET));
+
+            if (retryBudget > 0) {
+                service.enableRetries(Integer.parseInt(Configuration.getParameter(ARGUSWS_RETRY_ATTEMPTS)),
+                    Long.parseLong(Configuration.getParameter(ARGUSWS_RETRY_DELAY)),
+                    Long.parseLong(Configuration.getParameter(ARGUSWS_RETRY_MAX_DELAY)), retryBudget);
+            }
             service.login(username, password);
         } catch (Exception ex) {
             throw new OrchestraException(MessageFormat.format("Could not create a {0} collector.", type), ex);
@@ -209,57 +310,83 @@ public class Collector {
 
             LOGGER.info("Invoking reader: " + reader.getDatasource());
 
-            final BlockingQueue<Metric> metricQueue = new LinkedBlockingQueue<>();
-            final BlockingQueue<Annotation> annotationQueue = new LinkedBlockingQueue<>();
+            final ReentrantLock drainLock = new ReentrantLock();
+            final Condition drainCondition = drainLock.newCondition();
+            final AtomicBoolean invokerDone = new AtomicBoolean(false);
+            final AtomicBoolean invokerSucceeded = new AtomicBoolean(false);
+            final AdaptiveBatchSizer metricSizer = new AdaptiveBatchSizer("metric", batchMinBytes, batchMaxBytes, batchMaxDatapoints,
+                batchTargetLatency);
+            final AdaptiveBatchSizer annotationSizer = new AdaptiveBatchSizer("annotation", batchMinBytes, batchMaxBytes, batchMaxDatapoints,
+                batchTargetLatency);
+            final SignalingQueue<Metric> metricQueue = new SignalingQueue<>(queueCapacity, queueBytes, METRIC_WEIGHER, queueBlocking, metricSizer,
+                drainLock, drainCondition);
+            final SignalingQueue<Annotation> annotationQueue = new SignalingQueue<>(queueCapacity, queueBytes, ANNOTATION_WEIGHER, queueBlocking,
+                annotationSizer, drainLock, drainCondition);
             long timeout = System.currentTimeMillis() + timeoutMillis;
             Thread invoker = new Thread(new Runnable() {
 
                     @Override
                     public void run() {
-                        reader.invokeCollection(metricQueue, annotationQueue);
+                        try {
+                            reader.invokeCollection(metricQueue, annotationQueue);
+                            invokerSucceeded.set(true);
+                        } finally {
+                            invokerDone.set(true);
+                            _signal(drainLock, drainCondition);
+                        }
                     }
                 }, "collectclient-invoker-" + ID.getAndIncrement());
+            Spool spool = _openSpool();
+            BatchSubmitter submitter = new BatchSubmitter(service, maxInFlight, metricSizer, annotationSizer, spool);
 
-            invoker.start();
+            try {
+                if (spool != null) {
+                    for (Spool.Record record : spool.getRecovered()) {
+                        submitter.replay(record);
+                    }
+                }
+                invoker.start();
+                while (System.currentTimeMillis() < timeout) {
+                    boolean readerDone = invokerDone.get();
+                    boolean metricCollectionDone = metricQueue.isEmpty() && (readerDone || reader.isMetricCollectionDone());
+                    boolean annotationCollectionDone = annotationQueue.isEmpty() && (readerDone || reader.isAnnotationCollectionDone());
 
-            List<Metric> metricChunk = new ArrayList<>(CHUNK_SIZE);
-            List<Annotation> annotationChunk = new ArrayList<>(CHUNK_SIZE);
+                    if (Thread.currentThread().isInterrupted() || (metricCollectionDone && annotationCollectionDone)) {
+                        break;
+                    }
+                    _awaitChunk(metricQueue, annotationQueue, invokerDone, drainLock, drainCondition, timeout);
 
-            while (System.currentTimeMillis() < timeout) {
-                boolean metricCollectionDone = metricQueue.isEmpty() && reader.isMetricCollectionDone();
-                boolean annotationCollectionDone = annotationQueue.isEmpty() && reader.isAnnotationCollectionDone();
+                    List<Metric> metricChunk = _drainChunk(metricQueue, metricSizer, METRIC_DATAPOINTS);
+                    List<Annotation> annotationChunk = _drainChunk(annotationQueue, annotationSizer, ANNOTATION_DATAPOINTS);
 
-                if (Thread.currentThread().isInterrupted() || (metricCollectionDone && annotationCollectionDone)) {
-                    break;
-                }
-                metricQueue.drainTo(metricChunk, CHUNK_SIZE);
-                annotationQueue.drainTo(annotationChunk, CHUNK_SIZE);
-                if (!metricChunk.isEmpty()) {
-                    try {
-                        service.put(metricChunk);
-                        LOGGER.debug("metric chunk sent to service");
-                    } finally {
-                        metricChunk.clear();
+                    if (coalescer != null) {
+                        metricChunk = coalescer.coalesce(metricChunk);
                     }
-                }
-                if (!annotationChunk.isEmpty()) {
-                    try {
-                        service.putAnnotations(annotationChunk);
-                        LOGGER.debug("annotation chunk sent to service");
-                    } finally {
-                        annotationChunk.clear();
+                    if (!metricChunk.isEmpty()) {
+                        submitter.submitMetrics(metricChunk);
+                        LOGGER.debug("metric chunk submitted to service");
+                    }
+                    if (!annotationChunk.isEmpty()) {
+                        submitter.submitAnnotations(annotationChunk);
+                        LOGGER.debug("annotation chunk submitted to service");
                     }
                 }
-                try {
-                    Thread.sleep(POLL_INTERVAL_MS);
-                } catch (InterruptedException ex) {
-                    LOGGER.info("Execution was interrupted.");
-                    Thread.currentThread().interrupt();
-                    break;
+                commit(reader, submitter,
+                    submitter.awaitCompletion(timeout) && invokerSucceeded.get() && metricQueue.isEmpty() && annotationQueue.isEmpty());
+            } catch (InterruptedException ex) {
+                LOGGER.info("Execution was interrupted.");
+                Thread.currentThread().interrupt();
+            } finally {
+                submitter.close();
+                if (invoker.isAlive()) {
+                    invoker.interrupt();
+                }
+                if (spool != null) {
+                    _retain(submitter, metricQueue, annotationQueue);
+                    _closeSpool(spool);
                 }
             }
-            if (invoker.isAlive()) {
-                invoker.interrupt();
+            if (invoker.getState() != Thread.State.NEW) {
                 invoker.join(TIMEOUT_INTERVAL_MS);
             }
         } catch (InterruptedException ex) {
@@ -274,6 +401,143 @@ public class Collector {
         } // end try-catch-finally
     }
 
+    /**
+     * Commits the progress of the reader once everything it collected has been delivered to Argus. Entities which Argus rejected were dropped from
+     * their batches and never delivered, so the run fails instead and the reader collects the same data again on the next run.
+     *
+     * @param   reader     The reader whose progress to commit. Cannot be null.
+     * @param   submitter  The submitter through which the collected data was delivered. Cannot be null.
+     * @param   delivered  True if the collection and all submissions completed successfully.
+     *
+     * @throws  OrchestraException  If Argus rejected any of the submitted entities.
+     */
+    static void commit(DomainReader reader, BatchSubmitter submitter, boolean delivered) {
+        long rejected = submitter.getRejectedCount();
+
+        if (rejected > 0) {
+            throw new OrchestraException(MessageFormat.format("Argus rejected {0} entities. The reader progress was not committed.", rejected));
+        }
+        if (delivered) {
+            reader.commit();
+        }
+    }
+
+    private Spool _openSpool() {
+        if (spoolDirectory == null) {
+            return null;
+        }
+        try {
+            Spool spool = new Spool(spoolDirectory, spoolSegmentBytes);
+
+            LOGGER.info("Replaying {} spooled batches from {}.", spool.getRecovered().size(), spoolDirectory);
+            return spool;
+        } catch (IOException ex) {
+            throw new OrchestraException("Could not open the spool.", ex);
+        }
+    }
+
+    private static void _closeSpool(Spool spool) {
+        try {
+            spool.close();
+        } catch (IOException ex) {
+            LOGGER.warn("The spool failed to close properly.", ex);
+        }
+    }
+
+    /* Records any entities remaining in the queues in the spool so that they are delivered by the next run. */
+    private static void _retain(BatchSubmitter submitter, SignalingQueue<Metric> metricQueue, SignalingQueue<Annotation> annotationQueue) {
+        try {
+            List<Metric> metrics = new ArrayList<>();
+            List<Annotation> annotations = new ArrayList<>();
+
+            while (metricQueue.drainTo(metrics, CHUNK_SIZE) > 0) {
+                submitter.retainMetrics(metrics);
+                metrics = new ArrayList<>();
+            }
+            while (annotationQueue.drainTo(annotations, CHUNK_SIZE) > 0) {
+                submitter.retainAnnotations(annotations);
+                annotations = new ArrayList<>();
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.error("Could not retain the remaining queued entities in the spool.", ex);
+        }
+    }
+
+    /*
+     * Removes the next batch from the queue.  The batch is limited by the current target size, by the maximum number of datapoints and by the
+     * chunk size, but always contains at least one entity if the queue is not empty so that oversized entities are still submitted.
+     */
+    private static <T> List<T> _drainChunk(SignalingQueue<T> queue, AdaptiveBatchSizer sizer, BoundedQueue.Weigher<? super T> datapointCounter) {
+        List<T> chunk = new ArrayList<>();
+        long targetBytes = sizer.getTargetBytes();
+        long bytes = 0;
+        long datapoints = 0;
+
+        while (chunk.size() < CHUNK_SIZE) {
+            T next = queue.peek();
+
+            if (next == null) {
+                break;
+            }
+
+            long weight = queue.peekWeight();
+            long count = datapointCounter.weigh(next);
+
+            if (!chunk.isEmpty() && (bytes + weight > targetBytes || datapoints + count > sizer.getMaxDatapoints())) {
+                break;
+            }
+            chunk.add(queue.poll());
+            bytes += weight;
+            datapoints += count;
+        }
+        return chunk;
+    }
+
+    /*
+     * Blocks until either queue holds a full chunk, the linger interval for a partially filled queue has elapsed, the reader invocation has
+     * returned or the collector deadline has passed.  An idle wait is also bounded by the linger interval so that readers which report completion
+     * through their status methods are still detected.
+     */
+    private void _awaitChunk(SignalingQueue<?> metricQueue, SignalingQueue<?> annotationQueue, AtomicBoolean invokerDone, ReentrantLock lock,
+        Condition condition, long deadline) throws InterruptedException {
+        long lingerDeadline = 0;
+
+        lock.lock();
+        try {
+            while (!invokerDone.get()) {
+                boolean queued = !metricQueue.isEmpty() || !annotationQueue.isEmpty();
+                long now = System.currentTimeMillis();
+
+                if (metricQueue.isChunkReady() || annotationQueue.isChunkReady() || now >= deadline) {
+                    return;
+                }
+                if (queued && lingerDeadline == 0) {
+                    lingerDeadline = now + LINGER_INTERVAL_MS;
+                }
+                if (lingerDeadline != 0 && now >= lingerDeadline) {
+                    return;
+                }
+
+                long wakeup = Math.min(deadline, lingerDeadline == 0 ? now + LINGER_INTERVAL_MS : lingerDeadline);
+
+                if (!condition.await(wakeup - now, TimeUnit.MILLISECONDS) && lingerDeadline == 0) {
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void _signal(ReentrantLock lock, Condition condition) {
+        lock.lock();
+        try {
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private DomainReader _getDomainReader(String type) {
         assert (type != null) : "Reader type cannot be null.";
         try {
@@ -286,5 +550,63 @@ public class Collector {
             throw new OrchestraException(ex);
         }
     }
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /**
+     * A bounded queue that wakes the collector drain loop when the queue transitions from empty or when a full chunk is available. A chunk is full
+     * once it reaches either the chunk size or the current target batch size.
+     *
+     * @param  <E>  The type of the queued entities.
+     */
+    private static class SignalingQueue<E> extends BoundedQueue<E> {
+
+        private final AdaptiveBatchSizer sizer;
+        private final ReentrantLock drainLock;
+        private final Condition drainCondition;
+
+        SignalingQueue(int capacity, long maxBytes, Weigher<? super E> weigher, boolean blocking, AdaptiveBatchSizer sizer, ReentrantLock drainLock,
+            Condition drainCondition) {
+            super(capacity, maxBytes, weigher, blocking);
+            this.sizer = sizer;
+            this.drainLock = drainLock;
+            this.drainCondition = drainCondition;
+        }
+
+        @Override
+        public boolean offer(E e) {
+            boolean result = super.offer(e);
+
+            if (result) {
+                _signalIfReady();
+            }
+            return result;
+        }
+
+        @Override
+        public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+            boolean result = super.offer(e, timeout, unit);
+
+            if (result) {
+                _signalIfReady();
+            }
+            return result;
+        }
+
+        @Override
+        public void put(E e) throws InterruptedException {
+            super.put(e);
+            _signalIfReady();
+        }
+
+        boolean isChunkReady() {
+            return size() >= CHUNK_SIZE || getWeight() >= sizer.getTargetBytes();
+        }
+
+        private void _signalIfReady() {
+            if (size() == 1 || isChunkReady()) {
+                _signal(drainLock, drainCondition);
+            }
+        }
+    }
 }
 /* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
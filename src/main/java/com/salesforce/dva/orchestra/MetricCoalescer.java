@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.salesforce.dva.orchestra.argus.entity.SeriesKey;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * Merges the metrics of a batch which belong to the same series, so that each series is submitted to Argus as a single entity. Metrics belong to
+ * the same series when their scope, metric, tags, display name and units are equal. The datapoints of later metrics are merged into the first
+ * metric of the series and a conflict rule decides the value of a timestamp present in more than one of them. The batch drained by the collector
+ * is the coalescing window, so merging is bounded by the batch size limits and the collector linger interval.
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+final class MetricCoalescer {
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final Conflict conflict;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new MetricCoalescer object.
+     *
+     * @param  conflict  The rule used to resolve duplicate timestamps. Cannot be null.
+     */
+    MetricCoalescer(Conflict conflict) {
+        requireArgument((this.conflict = conflict) != null, "The conflict rule cannot be null.");
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Merges the metrics of a batch. Metrics are returned in the order in which their series first appear. The first metric of each series is
+     * updated in place.
+     *
+     * @param   metrics  The batch to coalesce. Cannot be null.
+     *
+     * @return  The coalesced batch. Will never be null.
+     */
+    List<Metric> coalesce(List<Metric> metrics) {
+        requireArgument(metrics != null, "Metrics cannot be null.");
+        if (metrics.size() < 2) {
+            return metrics;
+        }
+
+        Map<SeriesKey, Metric> series = new LinkedHashMap<>();
+        List<Metric> result = new ArrayList<>(metrics.size());
+
+        for (Metric metric : metrics) {
+            SeriesKey key = SeriesKey.of(metric);
+            Metric first = series.get(key);
+
+            if (first == null) {
+                series.put(key, metric);
+                result.add(metric);
+            } else if (first != metric) {
+                if (_equal(first.getDisplayName(), metric.getDisplayName()) && _equal(first.getUnits(), metric.getUnits())) {
+                    _merge(first, metric);
+                } else {
+                    result.add(metric);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void _merge(Metric target, Metric source) {
+        Map<Long, String> existing = target.getDatapoints();
+
+        for (Map.Entry<Long, String> datapoint : source.getDatapoints().entrySet()) {
+            String current = existing.get(datapoint.getKey());
+            String value = datapoint.getValue();
+
+            if (current != null) {
+                value = conflict.resolve(current, value);
+            }
+            target.addDatapoint(datapoint.getKey(), value);
+        }
+    }
+
+    private static boolean _equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    //~ Enums ****************************************************************************************************************************************
+
+    /**
+     * The rules used to resolve a timestamp having a value in more than one metric of the same series. The numeric rules fall back to keeping the
+     * later value when either value is not a number.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    enum Conflict {
+
+        /** The value of the later metric is kept. */
+        LAST,
+        /** The value of the earlier metric is kept. */
+        FIRST,
+        /** The smaller value is kept. */
+        MIN,
+        /** The larger value is kept. */
+        MAX,
+        /** The values are added. */
+        SUM;
+
+        /**
+         * Returns the conflict rule having the given name.
+         *
+         * @param   name  The case insensitive name of the rule. Cannot be null.
+         *
+         * @return  The conflict rule.
+         *
+         * @throws  IllegalArgumentException  If no rule has the name.
+         */
+        static Conflict fromName(String name) {
+            requireArgument(name != null, "The conflict rule name cannot be null.");
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException(MessageFormat.format("Unsupported conflict rule: {0}.", name));
+            }
+        }
+
+        /**
+         * Resolves a conflict.
+         *
+         * @param   earlier  The value of the earlier metric. Cannot be null.
+         * @param   later    The value of the later metric. Cannot be null.
+         *
+         * @return  The resolved value.
+         */
+        String resolve(String earlier, String later) {
+            if (this == LAST) {
+                return later;
+            } else if (this == FIRST) {
+                return earlier;
+            }
+
+            double a;
+            double b;
+
+            try {
+                a = Double.parseDouble(earlier);
+                b = Double.parseDouble(later);
+            } catch (NumberFormatException ex) {
+                return later;
+            }
+            switch (this) {
+                case MIN:
+                    return a <= b ? earlier : later;
+                case MAX:
+                    return a >= b ? earlier : later;
+                default:
+
+                    double sum = a + b;
+
+                    if (sum == Math.rint(sum) && Math.abs(sum) < 1e15) {
+                        return Long.toString((long) sum);
+                    }
+                    return Double.toString(sum);
+            }
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -45,14 +45,14 @@ import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -97,7 +97,8 @@ public class ArgusHttpClient {
     CloseableHttpClient httpClient;
     PoolingHttpClientConnectionManager connMgr;
     private BasicCookieStore cookieStore;
-    private BasicHttpContext httpContext;
+    private volatile int compressionLevel = JsonEntity.NO_COMPRESSION;
+    private volatile long compressionThreshold;
 
     //~ Constructors *********************************************************************************************************************************
 
@@ -138,8 +139,6 @@ public class ArgusHttpClient {
             connMgr.setMaxPerRoute(new HttpRoute(host), maxConn / 2);
             httpClient = HttpClients.custom().setConnectionManager(connMgr).setDefaultRequestConfig(defaultRequestConfig).build();
             cookieStore = new BasicCookieStore();
-            httpContext = new BasicHttpContext();
-            httpContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
         } catch (MalformedURLException ex) {
             throw new OrchestraException("Error initializing the Argus HTTP Client.", ex);
         }
@@ -162,6 +161,20 @@ public class ArgusHttpClient {
         }
     }
 
+    /**
+     * Configures gzip compression of collection payloads. Payloads whose estimated size is below the threshold are sent uncompressed, since the
+     * compression overhead outweighs the savings for small requests.
+     *
+     * @param  level      The gzip compression level from 1 to 9, or {@link JsonEntity#NO_COMPRESSION} to disable compression.
+     * @param  threshold  The estimated payload size in bytes at or above which payloads are compressed. Cannot be negative.
+     */
+    void setCompression(int level, long threshold) {
+        requireArgument(level == JsonEntity.NO_COMPRESSION || (level >= 1 && level <= 9), "Compression level must be between 1 and 9.");
+        requireArgument(threshold >= 0, "Compression threshold cannot be negative.");
+        compressionThreshold = threshold;
+        compressionLevel = level;
+    }
+
     void login(String username, String password) {
         String requestUrl = endpoint + "/auth/login";
         Credentials creds = new Credentials();
@@ -213,28 +226,33 @@ public class ArgusHttpClient {
      *
      * @param   data  The list of metrics to post. Cannot be null, but may be empty.
      *
-     * @throws  OrchestraException  If an error occurs.
+     * @throws  ArgusHttpException  If the web services respond with an unsuccessful status.
+     * @throws  OrchestraException  If any other error occurs.
      */
     public void putMetricData(List<Metric> data) {
         String requestUrl = endpoint + "/collection/metrics";
         HttpResponse response = null;
 
         try {
-            String json = toJson(data.toArray());
+            long size = 0;
+
+            for (Metric metric : data) {
+                size += SizeEstimator.estimate(metric);
+            }
+
+            JsonEntity entity = new JsonEntity(MAPPER, data, _compressionLevel(size));
 
             if (!preview) {
-                response = executeHttpRequest(RequestType.POST, requestUrl, new StringEntity(json));
+                response = executeHttpRequest(RequestType.POST, requestUrl, entity);
                 EntityUtils.consume(response.getEntity());
             } else {
-                System.out.println(json);
+                _print(entity);
             }
         } catch (IOException | RuntimeException ex) {
             throw new OrchestraException(ex);
         }
         if (!preview && response.getStatusLine().getStatusCode() != 200) {
-            String message = response.getStatusLine().getReasonPhrase();
-
-            throw new OrchestraException(message);
+            throw new ArgusHttpException(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
         }
         LOGGER.info("Posted {} metrics.", data.size());
     }
@@ -263,37 +281,45 @@ public class ArgusHttpClient {
      *
      * @param   annotations  The list of annotations to submit. Cannot be null, but may be empty.
      *
-     * @throws  OrchestraException  If an error occurs.
+     * @throws  ArgusHttpException  If the web services respond with an unsuccessful status.
+     * @throws  OrchestraException  If any other error occurs.
      */
     public void putAnnotationData(List<Annotation> annotations) {
         String requestUrl = endpoint + "/collection/annotations";
         HttpResponse response = null;
 
         try {
-            String json = toJson(annotations);
+            long size = 0;
+
+            for (Annotation annotation : annotations) {
+                size += SizeEstimator.estimate(annotation);
+            }
+
+            JsonEntity entity = new JsonEntity(MAPPER, annotations, _compressionLevel(size));
 
             if (!preview) {
-                response = executeHttpRequest(RequestType.POST, requestUrl, new StringEntity(json));
+                response = executeHttpRequest(RequestType.POST, requestUrl, entity);
                 EntityUtils.consume(response.getEntity());
             } else {
-                System.out.println(json);
+                _print(entity);
             }
         } catch (IOException | RuntimeException ex) {
             throw new OrchestraException(ex);
         }
         if (!preview && response.getStatusLine().getStatusCode() != 200) {
-            String message = response.getStatusLine().getReasonPhrase();
-
-            throw new OrchestraException(message);
+            throw new ArgusHttpException(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
         }
         LOGGER.info("Posted {} annotations.", annotations.size());
     }
 
-    /* Execute a request given by type requestType. */
-    private HttpResponse executeHttpRequest(RequestType requestType, String url, StringEntity entity) throws IOException {
+    /* Execute a request given by type requestType.  Each request uses its own context so that concurrent requests only share the cookie store. */
+    private HttpResponse executeHttpRequest(RequestType requestType, String url, AbstractHttpEntity entity) throws IOException {
         HttpResponse httpResponse = null;
+        HttpClientContext httpContext = HttpClientContext.create();
 
-        if (entity != null) {
+        httpContext.setCookieStore(cookieStore);
+
+        if (entity != null && entity.getContentType() == null) {
             entity.setContentType("application/json");
         }
         switch (requestType) {
@@ -329,6 +355,19 @@ public class ArgusHttpClient {
         return httpResponse;
     }
 
+    /* Preview output is always written uncompressed. */
+    private int _compressionLevel(long estimatedSize) {
+        int level = compressionLevel;
+
+        return (preview || estimatedSize < compressionThreshold) ? JsonEntity.NO_COMPRESSION : level;
+    }
+
+    /* Preview mode writes the payload to standard out using the same serialization path as a real submission. */
+    private void _print(JsonEntity entity) throws IOException {
+        entity.writeTo(System.out);
+        System.out.println();
+    }
+
     private <T> String toJson(T type) {
         try {
             return MAPPER.writeValueAsString(type);
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus;
+
+import com.salesforce.dva.orchestra.OrchestraException;
+
+/**
+ * Indicates that the Argus web services responded to a request with an unsuccessful HTTP status.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+@SuppressWarnings("serial")
+public class ArgusHttpException extends OrchestraException {
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final int statusCode;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new ArgusHttpException object.
+     *
+     * @param  statusCode    The HTTP status code of the response.
+     * @param  reasonPhrase  The reason phrase of the response.
+     */
+    public ArgusHttpException(int statusCode, String reasonPhrase) {
+        super(statusCode + ": " + reasonPhrase);
+        this.statusCode = statusCode;
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Returns the HTTP status code of the response.
+     *
+     * @return  The HTTP status code.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Indicates whether the failure is likely to be transient, in which case the same request may succeed if it is retried. This is the case for
+     * server errors, request timeouts and throttled requests.
+     *
+     * @return  True if the request may be retried unchanged.
+     */
+    public boolean isTransient() {
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+
+    /**
+     * Indicates whether the request was rejected because of its content, such that resubmitting part of the request may succeed. This is the case
+     * for requests which are too large and for malformed requests.
+     *
+     * @return  True if the request was rejected because of its content.
+     */
+    public boolean isRejected() {
+        return statusCode == 413 || statusCode == 400;
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -30,11 +30,18 @@
  */
 package com.salesforce.dva.orchestra.argus;
 
+import com.salesforce.dva.orchestra.OrchestraException;
 import com.salesforce.dva.orchestra.argus.entity.Annotation;
 import com.salesforce.dva.orchestra.argus.entity.Metric;
 import org.apache.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
 
@@ -42,14 +49,29 @@ import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
  * Provides read and write access to Argus. All annotations must be attached to a metric. Global annotations must be emulated by attaching them to a
  * dummy metric. This is to prevent the overpopulation of global metrics which will result in poor global annotation performance.
  *
+ * <p>Writes may optionally be retried. Transient failures are retried with jittered exponential backoff, and a batch which still fails, or which
+ * is rejected because of its size or content, is split in half and each half is resubmitted. A single entity rejected by Argus is logged and
+ * dropped so that it does not prevent the remainder of the batch from being written, and is returned to the caller so that the loss can be
+ * accounted for. Every retry and resubmission consumes one unit of a retry
+ * budget shared by all writes made through the service, and once the budget is exhausted failures are no longer retried.</p>
+ *
  * @author  Tom Valine (tvaline@salesforce.com)
  * @author  Bhagyashree Shekhawat (bbhati@salesforce.com)
  */
 public class ArgusService {
 
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArgusService.class);
+
     //~ Instance fields ******************************************************************************************************************************
 
     private final ArgusHttpClient client;
+    private final AtomicInteger retryBudget = new AtomicInteger(0);
+    private volatile boolean retryEnabled = false;
+    private volatile int maxAttempts = 1;
+    private volatile long initialDelayMillis;
+    private volatile long maxDelayMillis;
 
     //~ Constructors *********************************************************************************************************************************
 
@@ -108,13 +130,25 @@ public class ArgusService {
     }
 
     /**
-     * Writes metric data.
+     * Writes metric data. When retries are enabled, metrics which Argus rejects individually are dropped and returned rather than failing the write.
      *
-     * @param  data  The metric data to write.
+     * @param   data  The metric data to write.
+     *
+     * @return  The metrics rejected by Argus. Will never be null, but may be empty.
      */
-    public void put(List<Metric> data) {
+    public List<Metric> put(List<Metric> data) {
         requireArgument(data != null && !data.isEmpty(), "Data cannot be null or empty.");
-        client.putMetricData(data);
+
+        List<Metric> rejected = new ArrayList<>();
+
+        _write(data, new BatchWriter<Metric>() {
+
+                @Override
+                public void write(List<Metric> batch) {
+                    client.putMetricData(batch);
+                }
+            }, "metric", 1, rejected);
+        return rejected;
     }
 
     /**
@@ -128,13 +162,65 @@ public class ArgusService {
     }
 
     /**
-     * Create or update global annotations.
+     * Create or update global annotations. When retries are enabled, annotations which Argus rejects individually are dropped and returned rather
+     * than failing the write.
+     *
+     * @param   annotations  The annotations to add. Cannot be null.
      *
-     * @param  annotations  The annotations to add. Cannot be null.
+     * @return  The annotations rejected by Argus. Will never be null, but may be empty.
      */
-    public void putAnnotations(List<Annotation> annotations) {
+    public List<Annotation> putAnnotations(List<Annotation> annotations) {
         requireArgument(annotations != null && !annotations.isEmpty(), "Data cannot be null or empty.");
-        client.putAnnotationData(annotations);
+
+        List<Annotation> rejected = new ArrayList<>();
+
+        _write(annotations, new BatchWriter<Annotation>() {
+
+                @Override
+                public void write(List<Annotation> batch) {
+                    client.putAnnotationData(batch);
+                }
+            }, "annotation", 1, rejected);
+        return rejected;
+    }
+
+    /**
+     * Enables gzip compression of collection payloads whose estimated size is at least the given threshold.
+     *
+     * @param  level      The gzip compression level from 1 (fastest) to 9 (smallest).
+     * @param  threshold  The estimated payload size in bytes below which payloads are sent uncompressed. Cannot be negative.
+     */
+    public void enableCompression(int level, long threshold) {
+        requireArgument(level >= 1 && level <= 9, "Compression level must be between 1 and 9.");
+        client.setCompression(level, threshold);
+    }
+
+    /**
+     * Enables retrying of failed metric and annotation writes.
+     *
+     * @param  maxAttempts         The maximum number of attempts made to write a batch before it is split. Must be greater than zero.
+     * @param  initialDelayMillis  The delay before the first retry of a batch, which doubles with each further attempt. Must be greater than zero.
+     * @param  maxDelayMillis      The maximum delay between attempts. Cannot be less than the initial delay.
+     * @param  budget              The total number of retries and resubmissions permitted for the lifetime of the service. Cannot be negative.
+     */
+    public void enableRetries(int maxAttempts, long initialDelayMillis, long maxDelayMillis, int budget) {
+        requireArgument(maxAttempts > 0, "The maximum number of attempts must be greater than zero.");
+        requireArgument(initialDelayMillis > 0 && maxDelayMillis >= initialDelayMillis, "The retry delays are invalid.");
+        requireArgument(budget >= 0, "The retry budget cannot be negative.");
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        retryBudget.set(budget);
+        retryEnabled = true;
+    }
+
+    /**
+     * Returns the number of retries and resubmissions remaining in the retry budget.
+     *
+     * @return  The remaining retry budget.
+     */
+    public int getRemainingRetryBudget() {
+        return retryBudget.get();
     }
 
     /**
@@ -164,5 +250,92 @@ public class ArgusService {
     public HttpResponse queryMetrics(String expression) throws Exception {
         return client.getMetricData(expression);
     }
+
+    private <T> void _write(List<T> batch, BatchWriter<T> writer, String kind, int attempt, List<T> rejected) {
+        if (!retryEnabled) {
+            writer.write(batch);
+            return;
+        }
+        try {
+            writer.write(batch);
+        } catch (ArgusHttpException ex) {
+            if (ex.isRejected() && batch.size() == 1) {
+                LOGGER.warn("Dropped a {} rejected by Argus with status {}.", kind, ex.getMessage());
+                LOGGER.debug("Rejected {}: {}", kind, batch.get(0));
+                rejected.add(batch.get(0));
+            } else if (ex.isRejected() || (ex.isTransient() && attempt >= maxAttempts && batch.size() > 1)) {
+                _split(batch, writer, kind, ex, rejected);
+            } else if (ex.isTransient() && attempt < maxAttempts) {
+                _backoff(attempt, kind, ex);
+                _write(batch, writer, kind, attempt + 1, rejected);
+            } else {
+                throw ex;
+            }
+        } catch (OrchestraException ex) {
+            if (!(ex.getCause() instanceof IOException) || attempt >= maxAttempts) {
+                throw ex;
+            }
+            _backoff(attempt, kind, ex);
+            _write(batch, writer, kind, attempt + 1, rejected);
+        }
+    }
+
+    /* Resubmits each half of a failed batch, isolating the entities responsible for the failure. */
+    private <T> void _split(List<T> batch, BatchWriter<T> writer, String kind, OrchestraException cause, List<T> rejected) {
+        int middle = batch.size() / 2;
+
+        _consumeBudget(2, cause);
+        LOGGER.info("Splitting a batch of {} {} entities after failure: {}", batch.size(), kind, cause.getMessage());
+        _write(batch.subList(0, middle), writer, kind, 1, rejected);
+        _write(batch.subList(middle, batch.size()), writer, kind, 1, rejected);
+    }
+
+    /* Sleeps for a random delay between half and all of the exponential backoff interval for the given attempt. */
+    private void _backoff(int attempt, String kind, OrchestraException cause) {
+        _consumeBudget(1, cause);
+
+        long delay = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt - 1, 30));
+
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        LOGGER.warn("Retrying {} write attempt {} in {}ms after failure: {}", kind, attempt + 1, delay, cause.getMessage());
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new OrchestraException("Interrupted while waiting to retry a failed write.", cause);
+        }
+    }
+
+    private void _consumeBudget(int units, OrchestraException cause) {
+        while (true) {
+            int remaining = retryBudget.get();
+
+            if (remaining < units) {
+                throw new OrchestraException("The retry budget for writes to Argus is exhausted.", cause);
+            }
+            if (retryBudget.compareAndSet(remaining, remaining - units)) {
+                return;
+            }
+        }
+    }
+
+    //~ Inner Interfaces *****************************************************************************************************************************
+
+    /**
+     * Writes a batch of entities to Argus.
+     *
+     * @param  <T>  The type of entity written.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    private interface BatchWriter<T> {
+
+        /**
+         * Writes the batch.
+         *
+         * @param  batch  The entities to write. Cannot be null or empty.
+         */
+        void write(List<T> batch);
+    }
 }
 /* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
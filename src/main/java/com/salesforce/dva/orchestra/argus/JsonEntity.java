@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * A repeatable HTTP entity that serializes its value as JSON directly to the request output stream. The serialized form is never materialized as
+ * a string or byte array, so the memory used to send a request does not grow with the size of the payload. The generator writes through the
+ * buffers Jackson recycles per thread, and the content is sent using chunked transfer encoding since its length is not known in advance. The
+ * content may optionally be gzip compressed as it is written, in which case the content encoding is set accordingly.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class JsonEntity extends AbstractHttpEntity {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    /** The value indicating the content should not be compressed. */
+    static final int NO_COMPRESSION = -1;
+    private static final String GZIP_ENCODING = "gzip";
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final ObjectMapper mapper;
+    private final Object value;
+    private final int compressionLevel;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new JSON entity.
+     *
+     * @param  mapper  The object mapper used to serialize the value. Cannot be null.
+     * @param  value   The value to serialize. May be null.
+     */
+    JsonEntity(ObjectMapper mapper, Object value) {
+        this(mapper, value, NO_COMPRESSION);
+    }
+
+    /**
+     * Creates a new JSON entity that is optionally gzip compressed.
+     *
+     * @param  mapper            The object mapper used to serialize the value. Cannot be null.
+     * @param  value             The value to serialize. May be null.
+     * @param  compressionLevel  The gzip compression level from 1 to 9, or {@link #NO_COMPRESSION} to send the content uncompressed.
+     */
+    JsonEntity(ObjectMapper mapper, Object value, int compressionLevel) {
+        requireArgument(mapper != null, "Object mapper cannot be null.");
+        requireArgument(compressionLevel == NO_COMPRESSION ||
+            (compressionLevel >= Deflater.BEST_SPEED && compressionLevel <= Deflater.BEST_COMPRESSION), "Compression level must be between 1 and 9.");
+        this.mapper = mapper;
+        this.value = value;
+        this.compressionLevel = compressionLevel;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        if (isCompressed()) {
+            setContentEncoding(GZIP_ENCODING);
+        }
+        setChunked(true);
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Indicates whether the content is gzip compressed when written.
+     *
+     * @return  True if the content is compressed.
+     */
+    boolean isCompressed() {
+        return compressionLevel != NO_COMPRESSION;
+    }
+
+    /**
+     * Returns the serialized and, if applicable, compressed content. This buffers the complete payload and is only intended for callers that
+     * cannot consume the entity using {@link #writeTo(OutputStream)}.
+     *
+     * @return  The serialized content.
+     *
+     * @throws  IOException  If the value cannot be serialized.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    /**
+     * Serializes and, if applicable, compresses the value to the given stream. The stream is flushed but not closed.
+     *
+     * @param   outstream  The stream to write to. Cannot be null.
+     *
+     * @throws  IOException  If the value cannot be serialized or written.
+     */
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        requireArgument(outstream != null, "Output stream cannot be null.");
+
+        if (!isCompressed()) {
+            _serialize(outstream);
+        } else {
+            LevelGZIPOutputStream gzip = new LevelGZIPOutputStream(outstream, compressionLevel);
+
+            try {
+                _serialize(gzip);
+                gzip.finish();
+            } finally {
+                gzip.release();
+            }
+        }
+        outstream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    private void _serialize(OutputStream out) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            mapper.writeValue(generator, value);
+        } finally {
+            generator.close();
+        }
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /**
+     * A gzip stream using a specific compression level. The deflater can be released without closing the underlying stream.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+
+        LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(level);
+        }
+
+        void release() {
+            def.end();
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
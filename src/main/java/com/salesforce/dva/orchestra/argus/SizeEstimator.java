@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus;
+
+import com.salesforce.dva.orchestra.argus.entity.Annotation;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import java.util.Map;
+
+/**
+ * Estimates the serialized JSON size of collection entities. The estimates are intended for sizing queues and batches and only approximate the
+ * number of bytes written by the Argus HTTP client.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+public final class SizeEstimator {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    /* Object delimiters plus the quoted scope, metric, tags and datapoints field names. */
+    private static final int METRIC_OVERHEAD = 48;
+
+    /* Object delimiters plus the quoted annotation field names. */
+    private static final int ANNOTATION_OVERHEAD = 96;
+
+    /* Quotes, colon and comma surrounding a map entry. */
+    private static final int ENTRY_OVERHEAD = 6;
+
+    /* A thirteen digit epoch millisecond timestamp used as a datapoint key. */
+    private static final int TIMESTAMP_LENGTH = 13;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /* Private constructor to prevent instantiation. */
+    private SizeEstimator() {
+        assert (false) : "This class should never be instantiated.";
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Estimates the serialized size of a metric.
+     *
+     * @param   metric  The metric to estimate. Cannot be null.
+     *
+     * @return  The estimated size in bytes.
+     */
+    public static long estimate(Metric metric) {
+        long result = METRIC_OVERHEAD + length(metric.getScope()) + length(metric.getMetric()) + length(metric.getDisplayName()) +
+            length(metric.getUnits()) + estimate(metric.getTags());
+
+        for (String value : metric.getDatapoints().values()) {
+            result += TIMESTAMP_LENGTH + ENTRY_OVERHEAD + length(value);
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the serialized size of an annotation.
+     *
+     * @param   annotation  The annotation to estimate. Cannot be null.
+     *
+     * @return  The estimated size in bytes.
+     */
+    public static long estimate(Annotation annotation) {
+        return ANNOTATION_OVERHEAD + TIMESTAMP_LENGTH + length(annotation.getScope()) + length(annotation.getMetric()) +
+            length(annotation.getType()) + length(annotation.getSource()) + length(annotation.getId()) + estimate(annotation.getTags()) +
+            estimate(annotation.getFields());
+    }
+
+    private static long estimate(Map<String, String> entries) {
+        long result = 0;
+
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            result += ENTRY_OVERHEAD + length(entry.getKey()) + length(entry.getValue());
+        }
+        return result;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
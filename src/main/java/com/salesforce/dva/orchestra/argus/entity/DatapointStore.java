@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus.entity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * Columnar storage for the data points of a metric. Timestamps are held in ascending order in a primitive array alongside a parallel array of
+ * numeric values. A value is stored as a double only when its string form can be reproduced exactly from the double. Other values are kept in a
+ * string column which is only allocated once such a value is stored. Not thread safe.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+@SuppressWarnings("serial")
+final class DatapointStore implements Serializable {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final double MAX_INTEGRAL = 1e15;
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private long[] _timestamps = new long[0];
+    private double[] _values = new double[0];
+    private String[] _strings;
+    private int _size;
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Returns the number of data points.
+     *
+     * @return  The number of data points.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Adds a data point, replacing any existing value having the same timestamp.
+     *
+     * @param  timestamp  The data point timestamp.
+     * @param  value      The data point value. Cannot be null.
+     */
+    void put(long timestamp, String value) {
+        requireArgument(value != null, "Datapoint value cannot be null.");
+        _set(_slot(timestamp), value);
+    }
+
+    /**
+     * Adds a numeric data point, replacing any existing value having the same timestamp.
+     *
+     * @param  timestamp  The data point timestamp.
+     * @param  value      The data point value. Must be finite.
+     */
+    void put(long timestamp, double value) {
+        requireArgument(!Double.isNaN(value) && !Double.isInfinite(value), "Datapoint value must be finite.");
+
+        int index = _slot(timestamp);
+
+        _values[index] = value;
+        if (_strings != null) {
+            _strings[index] = null;
+        }
+    }
+
+    /**
+     * Replaces the data points with those of a map. The arrays are sized exactly to the number of data points. Maps which are not sorted by natural
+     * timestamp order are sorted before being copied.
+     *
+     * @param  datapoints  The new data points. May be null.
+     */
+    void replace(Map<Long, String> datapoints) {
+        Map<Long, String> sorted = datapoints;
+
+        if (datapoints instanceof View) {
+            if (((View) datapoints).store() == this) {
+                return;
+            }
+        } else if (datapoints != null && (!(datapoints instanceof SortedMap) || ((SortedMap<Long, String>) datapoints).comparator() != null)) {
+            sorted = new TreeMap<>(datapoints);
+        }
+        _timestamps = new long[0];
+        _values = new double[0];
+        _strings = null;
+        _size = 0;
+        if (sorted == null || sorted.isEmpty()) {
+            return;
+        }
+        _ensureCapacity(sorted.size());
+        for (Map.Entry<Long, String> entry : sorted.entrySet()) {
+            requireArgument(entry.getKey() != null, "Datapoint timestamp cannot be null.");
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the timestamp of a data point.
+     *
+     * @param   index  The position of the data point in timestamp order.
+     *
+     * @return  The timestamp.
+     */
+    long timestampAt(int index) {
+        return _timestamps[index];
+    }
+
+    /**
+     * Returns the value of a data point as it was originally supplied.
+     *
+     * @param   index  The position of the data point in timestamp order.
+     *
+     * @return  The value. Will never be null.
+     */
+    String valueAt(int index) {
+        if (_strings != null && _strings[index] != null) {
+            return _strings[index];
+        }
+        return _format(_values[index]);
+    }
+
+    /**
+     * Returns an unmodifiable map view of the data points, iterated in timestamp order.
+     *
+     * @return  The map view. Will never be null.
+     */
+    Map<Long, String> asMap() {
+        return new View();
+    }
+
+    private int _indexOf(Object key) {
+        if (!(key instanceof Long)) {
+            return -1;
+        }
+        return Arrays.binarySearch(_timestamps, 0, _size, (Long) key);
+    }
+
+    /* Returns the position of the timestamp, inserting it if it is not present. */
+    private int _slot(long timestamp) {
+        int index;
+
+        if (_size == 0 || timestamp > _timestamps[_size - 1]) {
+            index = _size;
+        } else {
+            index = Arrays.binarySearch(_timestamps, 0, _size, timestamp);
+            if (index >= 0) {
+                return index;
+            }
+            index = -index - 1;
+        }
+        _ensureCapacity(_size + 1);
+        if (index < _size) {
+            System.arraycopy(_timestamps, index, _timestamps, index + 1, _size - index);
+            System.arraycopy(_values, index, _values, index + 1, _size - index);
+            if (_strings != null) {
+                System.arraycopy(_strings, index, _strings, index + 1, _size - index);
+            }
+        }
+        _timestamps[index] = timestamp;
+        _size++;
+        return index;
+    }
+
+    private void _set(int index, String value) {
+        double parsed = _parse(value);
+
+        if (!Double.isNaN(parsed) && _format(parsed).equals(value)) {
+            _values[index] = parsed;
+            if (_strings != null) {
+                _strings[index] = null;
+            }
+        } else {
+            if (_strings == null) {
+                _strings = new String[_timestamps.length];
+            }
+            _values[index] = Double.NaN;
+            _strings[index] = value;
+        }
+    }
+
+    private void _ensureCapacity(int capacity) {
+        if (capacity > _timestamps.length) {
+            int length = Math.max(Math.max(capacity, INITIAL_CAPACITY), _timestamps.length + (_timestamps.length >> 1));
+
+            _timestamps = Arrays.copyOf(_timestamps, length);
+            _values = Arrays.copyOf(_values, length);
+            if (_strings != null) {
+                _strings = Arrays.copyOf(_strings, length);
+            }
+        }
+    }
+
+    private static double _parse(String value) {
+        if (value.isEmpty() || value.length() > 24) {
+            return Double.NaN;
+        }
+
+        char first = value.charAt(0);
+
+        if ((first < '0' || first > '9') && first != '-') {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    /* Integral values are rendered without a fractional part, all others as Double.toString renders them. */
+    private static String _format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /**
+     * Serializes the data point view directly from the columns as a JSON object of timestamp to value strings.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    static final class JsonWriter extends JsonSerializer<Map<Long, String>> {
+
+        @Override
+        public void serialize(Map<Long, String> datapoints, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            if (datapoints instanceof View) {
+                DatapointStore store = ((View) datapoints).store();
+
+                for (int i = 0; i < store._size; i++) {
+                    generator.writeFieldName(Long.toString(store._timestamps[i]));
+                    generator.writeString(store.valueAt(i));
+                }
+            } else {
+                for (Map.Entry<Long, String> entry : datapoints.entrySet()) {
+                    generator.writeFieldName(String.valueOf(entry.getKey()));
+                    generator.writeString(entry.getValue());
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /* An unmodifiable map backed by the columns. */
+    private final class View extends AbstractMap<Long, String> {
+
+        @Override
+        public int size() {
+            return _size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return _indexOf(key) >= 0;
+        }
+
+        @Override
+        public String get(Object key) {
+            int index = _indexOf(key);
+
+            if (index < 0) {
+                return null;
+            }
+            return valueAt(index);
+        }
+
+        @Override
+        public Set<Map.Entry<Long, String>> entrySet() {
+            return new AbstractSet<Map.Entry<Long, String>>() {
+
+                    @Override
+                    public int size() {
+                        return _size;
+                    }
+
+                    @Override
+                    public Iterator<Map.Entry<Long, String>> iterator() {
+                        return new Iterator<Map.Entry<Long, String>>() {
+
+                                private int next;
+
+                                @Override
+                                public boolean hasNext() {
+                                    return next < _size;
+                                }
+
+                                @Override
+                                public Map.Entry<Long, String> next() {
+                                    if (next >= _size) {
+                                        throw new NoSuchElementException();
+                                    }
+
+                                    int index = next++;
+
+                                    return new SimpleImmutableEntry<>(_timestamps[index], valueAt(index));
+                                }
+
+                                @Override
+                                public void remove() {
+                                    throw new UnsupportedOperationException();
+                                }
+                            };
+                    }
+                };
+        }
+
+        DatapointStore store() {
+            return DatapointStore.this;
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -30,13 +30,13 @@
  */
 package com.salesforce.dva.orchestra.argus.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.io.Serializable;
 import java.text.MessageFormat;
-import java.util.Collections;
 import java.util.Map;
-import java.util.TreeMap;
 
 import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
 
@@ -60,7 +60,7 @@ public class Metric extends TSDBEntity implements Serializable {
 
     private String _displayName;
     private String _units;
-    private final Map<Long, String> _datapoints;
+    private final DatapointStore _datapoints;
 
     //~ Constructors *********************************************************************************************************************************
 
@@ -79,7 +79,7 @@ public class Metric extends TSDBEntity implements Serializable {
     /** Creates a new Metric object. */
     protected Metric() {
         super(null, null);
-        _datapoints = new TreeMap<>();
+        _datapoints = new DatapointStore();
     }
 
     //~ Methods **************************************************************************************************************************************
@@ -97,24 +97,55 @@ public class Metric extends TSDBEntity implements Serializable {
     }
 
     /**
-     * Returns an unmodifiable map of time series data points which is backed by the entity objects internal data.
+     * Returns an unmodifiable map of time series data points which is backed by the entity objects internal data. The map is iterated in ascending
+     * timestamp order.
      *
      * @return  The map of time series data points. Will never be null, but may be empty.
      */
+    @JsonSerialize(using = DatapointStore.JsonWriter.class)
     public Map<Long, String> getDatapoints() {
-        return Collections.unmodifiableMap(_datapoints);
+        return _datapoints.asMap();
+    }
+
+    /**
+     * Returns the number of data points without creating a view of them.
+     *
+     * @return  The number of data points.
+     */
+    @JsonIgnore
+    public int getDatapointCount() {
+        return _datapoints.size();
     }
 
     /**
      * Deletes the current set of data points and replaces them with a new set.
      *
-     * @param  datapoints  The new set of data points. If null or empty, only the deletion of the current set of data points is performed.
+     * @param  datapoints  The new set of data points. If null or empty, only the deletion of the current set of data points is performed. Values
+     *                     cannot be null.
      */
     public void setDatapoints(Map<Long, String> datapoints) {
-        _datapoints.clear();
-        if (datapoints != null) {
-            _datapoints.putAll(datapoints);
-        }
+        _datapoints.replace(datapoints);
+    }
+
+    /**
+     * Adds a single data point, replacing any existing value having the same timestamp. Data points added in ascending timestamp order are appended
+     * without any copying of the existing data points.
+     *
+     * @param  timestamp  The data point timestamp in epoch milliseconds.
+     * @param  value      The data point value. Cannot be null.
+     */
+    public void addDatapoint(long timestamp, String value) {
+        _datapoints.put(timestamp, value);
+    }
+
+    /**
+     * Adds a single numeric data point, replacing any existing value having the same timestamp. The value is stored without conversion to text.
+     *
+     * @param  timestamp  The data point timestamp in epoch milliseconds.
+     * @param  value      The data point value. Must be finite.
+     */
+    public void addDatapoint(long timestamp, double value) {
+        _datapoints.put(timestamp, value);
     }
 
     /**
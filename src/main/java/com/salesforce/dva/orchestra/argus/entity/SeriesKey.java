@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus.entity;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * An immutable identifier of a time series consisting of the scope, metric and tags. Tags are held as arrays sorted by tag name and the hash code
+ * is computed only once, so that equality is decided without allocation and keys of different series rarely compare more than their hash codes.
+ * Intended for use as a map key wherever entities are grouped by series.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+public final class SeriesKey {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final String[] NO_TAGS = new String[0];
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final String _scope;
+    private final String _metric;
+    private final String[] _tagNames;
+    private final String[] _tagValues;
+    private final int _tagsHash;
+    private final int _hash;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    private SeriesKey(String scope, String metric, String[] tagNames, String[] tagValues, int tagsHash) {
+        _scope = scope;
+        _metric = metric;
+        _tagNames = tagNames;
+        _tagValues = tagValues;
+        _tagsHash = tagsHash;
+        _hash = 31 * (31 * scope.hashCode() + metric.hashCode()) + tagsHash;
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Creates the key for a series.
+     *
+     * @param   scope   The scope of the series. Cannot be null.
+     * @param   metric  The metric of the series. Cannot be null.
+     * @param   tags    The tags of the series. Null values are ignored. May be null.
+     *
+     * @return  The series key.
+     */
+    public static SeriesKey of(String scope, String metric, Map<String, String> tags) {
+        requireArgument(scope != null, "Scope cannot be null.");
+        requireArgument(metric != null, "Metric cannot be null.");
+
+        String[] names = NO_TAGS;
+        String[] values = NO_TAGS;
+        int tagsHash = 0;
+
+        if (tags != null && !tags.isEmpty()) {
+            String[] sorted = new String[tags.size()];
+            int count = 0;
+
+            for (Map.Entry<String, String> entry : tags.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    sorted[count++] = entry.getKey();
+                }
+            }
+            Arrays.sort(sorted, 0, count);
+            names = new String[count];
+            values = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = sorted[i];
+                values[i] = tags.get(sorted[i]);
+                tagsHash = 31 * (31 * tagsHash + names[i].hashCode()) + values[i].hashCode();
+            }
+        }
+        return new SeriesKey(scope, metric, names, values, tagsHash);
+    }
+
+    /**
+     * Creates the key for a series.
+     *
+     * @param   entity  The entity whose series is identified. Cannot be null.
+     *
+     * @return  The series key.
+     */
+    public static SeriesKey of(TSDBEntity entity) {
+        requireArgument(entity != null, "Entity cannot be null.");
+        return of(entity.getScope(), entity.getMetric(), entity.getTags());
+    }
+
+    /**
+     * Creates the key of a series having the same scope and tags as this one but a different metric. The tags are shared rather than copied.
+     *
+     * @param   metric  The metric of the series. Cannot be null.
+     *
+     * @return  The series key.
+     */
+    public SeriesKey withMetric(String metric) {
+        requireArgument(metric != null, "Metric cannot be null.");
+        return new SeriesKey(_scope, metric, _tagNames, _tagValues, _tagsHash);
+    }
+
+    /**
+     * Returns the scope of the series.
+     *
+     * @return  The scope. Will never be null.
+     */
+    public String getScope() {
+        return _scope;
+    }
+
+    /**
+     * Returns the metric of the series.
+     *
+     * @return  The metric. Will never be null.
+     */
+    public String getMetric() {
+        return _metric;
+    }
+
+    /**
+     * Returns the number of tags of the series.
+     *
+     * @return  The number of tags.
+     */
+    public int getTagCount() {
+        return _tagNames.length;
+    }
+
+    /**
+     * Returns the name of a tag.
+     *
+     * @param   index  The position of the tag in tag name order.
+     *
+     * @return  The tag name.
+     */
+    public String getTagName(int index) {
+        return _tagNames[index];
+    }
+
+    /**
+     * Returns the value of a tag.
+     *
+     * @param   index  The position of the tag in tag name order.
+     *
+     * @return  The tag value.
+     */
+    public String getTagValue(int index) {
+        return _tagValues[index];
+    }
+
+    @Override
+    public int hashCode() {
+        return _hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SeriesKey)) {
+            return false;
+        }
+
+        SeriesKey other = (SeriesKey) obj;
+
+        if (_hash != other._hash || _tagNames.length != other._tagNames.length || !_scope.equals(other._scope) || !_metric.equals(other._metric)) {
+            return false;
+        }
+        if (_tagNames == other._tagNames) {
+            return true;
+        }
+        for (int i = 0; i < _tagNames.length; i++) {
+            if (!_tagNames[i].equals(other._tagNames[i]) || !_tagValues[i].equals(other._tagValues[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(_scope).append(':').append(_metric).append('{');
+
+        for (int i = 0; i < _tagNames.length; i++) {
+            if (i > 0) {
+                result.append(',');
+            }
+            result.append(_tagNames[i]).append('=').append(_tagValues[i]);
+        }
+        return result.append('}').toString();
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
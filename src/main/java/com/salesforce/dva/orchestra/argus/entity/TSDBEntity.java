@@ -34,8 +34,9 @@ import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
 
 import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
 
@@ -53,6 +54,7 @@ public abstract class TSDBEntity implements Serializable {
     private String _scope;
     private String _metric;
     private final Map<String, String> _tags = new HashMap<>(0);
+    private final Map<String, String> _tagsView = Collections.unmodifiableMap(_tags);
 
     //~ Constructors *********************************************************************************************************************************
 
@@ -127,40 +129,33 @@ public abstract class TSDBEntity implements Serializable {
     }
 
     /**
-     * Returns an unmodifiable collection of tags associated with the metric.
+     * Returns an unmodifiable view of the tags associated with the metric. The view is backed by the entity rather than copied, so it reflects
+     * subsequent tag changes. Like the entity itself, the view is not thread safe, and iterating it while the tags of the entity are changed may
+     * fail with a <tt>ConcurrentModificationException</tt>. Callers which need a stable snapshot must copy it.
      *
      * @return  The tags for a metric. Will never be null but may be empty.
      */
     public Map<String, String> getTags() {
-        Map<String, String> result = new HashMap<>();
-
-        for (Map.Entry<String, String> entry : _tags.entrySet()) {
-            String key = entry.getKey();
-
-            if (!ReservedField.isReservedField(key)) {
-                result.put(key, entry.getValue());
-            }
-        }
-        return Collections.unmodifiableMap(result);
+        return _tagsView;
     }
 
     /**
-     * Replaces the tags for a metric. Tags cannot use any of the reserved tag names.
+     * Replaces the tags for a metric. Tags cannot use any of the reserved tag names. The existing tags are left unchanged if validation fails.
      *
      * @param  tags  The new tags for the metric.
      */
     public void setTags(Map<String, String> tags) {
-        _tags.clear();
+        if (tags == _tagsView) {
+            return;
+        }
         if (tags != null) {
-            Map<String, String> updatedTags = new TreeMap<>();
-
-            for (Map.Entry<String, String> entry : tags.entrySet()) {
-                String key = entry.getKey();
-
+            for (String key : tags.keySet()) {
                 requireArgument(!Metric.ReservedField.isReservedField(key), MessageFormat.format("Tag {0} is a reserved tag name.", key));
-                updatedTags.put(key, entry.getValue());
             }
-            _tags.putAll(updatedTags);
+        }
+        _tags.clear();
+        if (tags != null) {
+            _tags.putAll(tags);
         }
     }
 
@@ -171,7 +166,13 @@ public abstract class TSDBEntity implements Serializable {
      * @param  value  The value of the tag. Can be null or empty.
      */
     public void setTag(String key, String value) {
-        setTag(key, value, true);
+        requireArgument(key != null && !key.isEmpty(), "Tag cannot be null or empty.");
+        requireArgument(!Metric.ReservedField.isReservedField(key), MessageFormat.format("Tag {0} is a reserved tag name.", key));
+        if (value == null || value.isEmpty()) {
+            _tags.remove(key);
+        } else {
+            _tags.put(key, value);
+        }
     }
 
     /**
@@ -182,7 +183,8 @@ public abstract class TSDBEntity implements Serializable {
      * @return  The value of the tag or null if no value for the key exists..
      */
     public String getTag(String key) {
-        return getTag(key, true);
+        requireArgument(key != null && !key.isEmpty(), "Tag cannot be null or empty.");
+        return Metric.ReservedField.isReservedField(key) ? null : _tags.get(key);
     }
 
     /**
@@ -224,25 +226,7 @@ public abstract class TSDBEntity implements Serializable {
         if ((_metric == null) ? (other._metric != null) : !_metric.equals(other._metric)) {
             return false;
         }
-        if (getTags() != other.getTags() && (getTags() == null || !getTags().equals(other.getTags()))) {
-            return false;
-        }
-        return true;
-    }
-
-    private void setTag(String key, String value, boolean isUserTag) {
-        requireArgument(key != null && !key.isEmpty(), "Tag cannot be null or empty.");
-        requireArgument(isUserTag ? !Metric.ReservedField.isReservedField(key) : true, MessageFormat.format("Tag {0} is a reserved tag name.", key));
-        if (value == null || value.isEmpty()) {
-            _tags.remove(key);
-        } else {
-            _tags.put(key, value);
-        }
-    }
-
-    private String getTag(String key, boolean isUserTag) {
-        requireArgument(key != null && !key.isEmpty(), "Tag cannot be null or empty.");
-        return (!isUserTag || !Metric.ReservedField.isReservedField(key)) ? _tags.get(key) : null;
+        return _tags.equals(other._tags);
     }
 
     //~ Enums ****************************************************************************************************************************************
@@ -259,6 +243,14 @@ public abstract class TSDBEntity implements Serializable {
         UNITS("units"),
         DISPLAY_NAME("displayName");
 
+        private static final Set<String> KEYS = new HashSet<>();
+
+        static {
+            for (ReservedField field : values()) {
+                KEYS.add(field.getKey());
+            }
+        }
+
         private final String _key;
 
         private ReservedField(String key) {
@@ -273,16 +265,7 @@ public abstract class TSDBEntity implements Serializable {
          * @return  True if the key is a reserved field or if the key is null.
          */
         public static boolean isReservedField(String key) {
-            if (key == null) {
-                return true;
-            } else {
-                for (ReservedField field : ReservedField.values()) {
-                    if (field.getKey().equals(key)) {
-                        return true;
-                    }
-                }
-            }
-            return false;
+            return key == null || KEYS.contains(key);
         }
 
         /**
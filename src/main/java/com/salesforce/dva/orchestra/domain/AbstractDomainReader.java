@@ -144,5 +144,8 @@ public abstract class AbstractDomainReader implements DomainReader {
 
     @Override
     public void invokeCollection(Queue<Metric> metricQueue, Queue<Annotation> annotationQueue) { }
+
+    @Override
+    public void commit() { }
 }
 /* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
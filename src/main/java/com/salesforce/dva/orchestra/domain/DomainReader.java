@@ -64,11 +64,24 @@ public interface DomainReader {
     /**
      * Queries time series data from a legacy system for uploading into TSDB.
      *
+     * <p>The queues supplied by the collector are bounded by entity count and estimated size so that a reader cannot outpace the submission to
+     * Argus without limit. Readers should insert using <tt>BlockingQueue.put</tt> when the supplied queue is a <tt>BlockingQueue</tt>, which blocks
+     * until space is available. Queues supplied in blocking mode also block in <tt>add</tt> and <tt>offer</tt>, so readers which are not aware of
+     * the blocking queue are throttled in the same way. Otherwise a full queue rejects the entity. Readers must stop collecting and return promptly
+     * when interrupted while blocked.</p>
+     *
      * @param  metricQueue      The queue into which the reader will write collected metrics. Will never be null.
      * @param  annotationQueue  The queue into which the reader will write collected annotations. Will never be null.
      */
     void invokeCollection(Queue<Metric> metricQueue, Queue<Annotation> annotationQueue);
 
+    /**
+     * Invoked once everything the reader collected has been submitted to Argus successfully. Readers which track their collection progress across
+     * runs should persist it here, so that data which failed to reach Argus is collected again by the next run. Not invoked if the collection or
+     * any submission failed or timed out, or if Argus rejected any of the submitted entities.
+     */
+    void commit();
+
     /**
      * Returns the descriptive name of the data source this reader supports.
      *
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * The schedule on which a Splunk job is polled for completion. Polling starts with a short delay which grows exponentially up to a maximum, so that
+ * short searches are noticed quickly while long running searches are not polled excessively.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class PollSchedule {
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final long initialDelay;
+    private final double backoff;
+    private final long maxDelay;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new PollSchedule object.
+     *
+     * @param  initialDelay  The delay in milliseconds before the first poll. Must be positive.
+     * @param  backoff       The factor by which the delay grows after each poll. Cannot be less than 1.
+     * @param  maxDelay      The maximum delay in milliseconds between polls. Cannot be less than the initial delay.
+     */
+    PollSchedule(long initialDelay, double backoff, long maxDelay) {
+        requireArgument((this.initialDelay = initialDelay) > 0, "The initial poll delay must be positive.");
+        requireArgument((this.backoff = backoff) >= 1, "The poll backoff cannot be less than 1.");
+        requireArgument((this.maxDelay = maxDelay) >= initialDelay, "The maximum poll delay cannot be less than the initial delay.");
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Returns the delay preceding a poll.
+     *
+     * @param   poll  The zero based index of the poll.
+     *
+     * @return  The delay in milliseconds.
+     */
+    long getDelay(int poll) {
+        requireArgument(poll >= 0, "The poll index cannot be negative.");
+
+        double delay = initialDelay * Math.pow(backoff, poll);
+
+        return delay >= maxDelay ? maxDelay : (long) delay;
+    }
+
+    /**
+     * Returns the maximum delay between polls.
+     *
+     * @return  The maximum delay in milliseconds.
+     */
+    long getMaxDelay() {
+        return maxDelay;
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
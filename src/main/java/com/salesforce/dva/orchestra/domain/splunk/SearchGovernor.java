@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * Limits the number of Splunk searches running concurrently. The limit starts at the maximum, typically the search quota available to the user,
+ * and adapts to the queueing observed on the search head. Each search which is queued by Splunk lowers the limit by one, and each search which runs
+ * without being queued raises it by one up to the maximum. This keeps the search head saturated without over-subscribing it.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class SearchGovernor {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchGovernor.class);
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final int maxLimit;
+    private int limit;
+    private int active;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new SearchGovernor object.
+     *
+     * @param  maxLimit  The maximum number of concurrent searches. Must be positive.
+     */
+    SearchGovernor(int maxLimit) {
+        requireArgument(maxLimit > 0, "The search limit must be positive.");
+        this.maxLimit = maxLimit;
+        this.limit = maxLimit;
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Waits until a search may be dispatched.
+     *
+     * @return  The permit for the search, which must be released once the search has completed. Will never be null.
+     *
+     * @throws  InterruptedException  If interrupted while waiting.
+     */
+    synchronized Permit acquire() throws InterruptedException {
+        while (active >= limit) {
+            wait();
+        }
+        active++;
+        return new Permit();
+    }
+
+    /**
+     * Returns the current concurrent search limit.
+     *
+     * @return  The current limit.
+     */
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    private synchronized void queued() {
+        if (limit > 1) {
+            limit--;
+            LOGGER.debug("Splunk search queued.  Lowered the concurrent search limit to {}.", limit);
+        }
+    }
+
+    private synchronized void release(boolean queued) {
+        active--;
+        if (!queued && limit < maxLimit) {
+            limit++;
+        }
+        notifyAll();
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /**
+     * The permission to run a single search.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    class Permit {
+
+        private int polls;
+        private boolean queued;
+        private boolean released;
+
+        private Permit() { }
+
+        /** Records that the search was queued by Splunk. Only the first call has an effect. */
+        void queued() {
+            if (!queued && !released) {
+                queued = true;
+                SearchGovernor.this.queued();
+            }
+        }
+
+        /**
+         * Records the dispatch state observed on a poll of the search job. Splunk briefly reports nearly every new job as queued, so the search
+         * only counts as queued if it is still queued on a poll following the first.
+         *
+         * @param  queuedBySplunk  True if the job was queued when polled.
+         */
+        void polled(boolean queuedBySplunk) {
+            if (polls++ > 0 && queuedBySplunk) {
+                queued();
+            }
+        }
+
+        /** Releases the permit. Only the first call has an effect. */
+        void release() {
+            if (!released) {
+                released = true;
+                SearchGovernor.this.release(queued);
+            }
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
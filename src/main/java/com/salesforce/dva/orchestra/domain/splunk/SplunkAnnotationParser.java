@@ -32,10 +32,6 @@ package com.salesforce.dva.orchestra.domain.splunk;
 
 import com.salesforce.dva.orchestra.argus.entity.Annotation;
 import com.splunk.Event;
-import com.splunk.ResultsReader;
-import java.io.IOException;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -59,30 +55,25 @@ class SplunkAnnotationParser extends SplunkParser<Annotation> {
     //~ Methods **************************************************************************************************************************************
 
     @Override
-    List<Annotation> parse(ResultsReader reader, List<String> queryParams) {
-        List<Annotation> result = new LinkedList<>();
+    Accumulator accumulate(final List<String> queryParams, final Sink<? super Annotation> sink) {
+        return new Accumulator() {
 
-        if (reader != null) {
-            Iterator<Event> iterator = reader.iterator();
+                @Override
+                public void accept(Event event) throws InterruptedException {
+                    Annotation annotation;
 
-            try {
-                while (iterator.hasNext()) {
-                    Event event = iterator.next();
-
-                    result.add(parseAnnotation(event, queryParams));
-                }
-            } catch (Exception ex) {
-                LOGGER.warn("Failed to parse annotation.", ex);
-            } finally {
-                try {
-                    reader.close();
-                } catch (IOException ex) {
-                    LOGGER.warn("Failed to close result set.");
-                    assert (false) : "This should never happen.";
+                    try {
+                        annotation = parseAnnotation(event, queryParams);
+                    } catch (RuntimeException ex) {
+                        LOGGER.warn("Failed to parse annotation.", ex);
+                        return;
+                    }
+                    sink.put(annotation);
                 }
-            }
-        }
-        return result;
+
+                @Override
+                public void finish() { }
+            };
     }
 
     private Annotation parseAnnotation(Event event, List<String> queryParams) {
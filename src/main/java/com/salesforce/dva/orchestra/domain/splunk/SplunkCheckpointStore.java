@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.OrchestraException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * Persists the high-watermark of each query, being the end of the time range covered by its last search whose results were successfully submitted
+ * to Argus. Subsequent searches of the query cover only the time following the watermark, less a lateness margin to collect late arriving events.
+ * The start of each search is aligned to the aggregation span of the queries, so that the first bucket of a search is never partially covered and
+ * submitted with a partial aggregate. Watermarks are staged as searches complete and only persisted once the collected data has been submitted.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class SplunkCheckpointStore {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SplunkCheckpointStore.class);
+    private static final Pattern TIME_MODIFIER = Pattern.compile(
+        "(?i)(\"[^\"]*\")|^\\s*(?:earliest|latest)\\s*=\\s*(?:\"[^\"]*\"|\\S+)\\s*|\\s+(?:earliest|latest)\\s*=\\s*(?:\"[^\"]*\"|\\S+)");
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final File file;
+    private final long latenessMillis;
+    private final long initialWindowMillis;
+    private final long spanMillis;
+    private final Properties watermarks = new Properties();
+    private final Map<String, Long> staged = new HashMap<>();
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new SplunkCheckpointStore object, loading any existing watermarks.
+     *
+     * @param  file                 The file in which watermarks are persisted. Cannot be null.
+     * @param  latenessMillis       The margin preceding the watermark which is searched again to collect late arriving events. Cannot be negative.
+     * @param  initialWindowMillis  The time range searched for a query which has no watermark. Must be positive.
+     * @param  spanMillis           The aggregation span of the queries, to a multiple of which the start of each search is aligned. Must be
+     *                              positive.
+     */
+    SplunkCheckpointStore(File file, long latenessMillis, long initialWindowMillis, long spanMillis) {
+        requireArgument((this.file = file) != null, "The checkpoint file cannot be null.");
+        requireArgument((this.latenessMillis = latenessMillis) >= 0, "The lateness margin cannot be negative.");
+        requireArgument((this.initialWindowMillis = initialWindowMillis) > 0, "The initial window must be positive.");
+        requireArgument((this.spanMillis = spanMillis) > 0, "The aggregation span must be positive.");
+        if (file.isFile()) {
+            try(InputStream in = new FileInputStream(file)) {
+                watermarks.load(in);
+            } catch (IOException ex) {
+                throw new OrchestraException("Could not read the checkpoint file " + file + ".", ex);
+            }
+        }
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Removes the time modifiers from the base search of a query, so that the time range of the search is governed by the checkpoint. Only a removed
+     * modifier and the whitespace separating it from the preceding term are dropped. Quoted terms and the rest of the query are left unchanged.
+     *
+     * @param   query  The query. Cannot be null.
+     *
+     * @return  The query without the time modifiers of its base search.
+     */
+    static String removeTimeModifiers(String query) {
+        int pipe = query.indexOf('|', query.trim().startsWith("|") ? query.indexOf('|') + 1 : 0);
+        String base = pipe < 0 ? query : query.substring(0, pipe);
+        Matcher matcher = TIME_MODIFIER.matcher(base);
+        StringBuffer result = new StringBuffer();
+
+        while (matcher.find()) {
+            matcher.appendReplacement(result, matcher.group(1) == null ? "" : Matcher.quoteReplacement(matcher.group(1)));
+        }
+        matcher.appendTail(result);
+        return pipe < 0 ? result.toString() : result.append(query.substring(pipe)).toString();
+    }
+
+    /**
+     * Returns the start of the time range to search for a query, aligned down to a multiple of the aggregation span.
+     *
+     * @param   query  The query. Cannot be null.
+     * @param   now    The current time in milliseconds, which ends the time range to search.
+     *
+     * @return  The start of the time range in milliseconds.
+     */
+    synchronized long getSearchStart(String query, long now) {
+        String watermark = watermarks.getProperty(query);
+
+        if (watermark == null) {
+            return _floor(now - initialWindowMillis);
+        }
+        try {
+            return _floor(Math.min(now, Long.parseLong(watermark) - latenessMillis));
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("Ignoring invalid checkpoint {} for query {}.", watermark, query);
+            return _floor(now - initialWindowMillis);
+        }
+    }
+
+    /**
+     * Stages the watermark of a query whose search has completed. The watermark is persisted by the next commit.
+     *
+     * @param  query      The query. Cannot be null.
+     * @param  watermark  The end of the time range covered by the search in milliseconds.
+     */
+    synchronized void stage(String query, long watermark) {
+        staged.put(query, watermark);
+    }
+
+    /** Persists the staged watermarks. */
+    synchronized void commit() {
+        if (staged.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Long> entry : staged.entrySet()) {
+            watermarks.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+
+        try {
+            try(OutputStream out = new FileOutputStream(temp)) {
+                watermarks.store(out, "Splunk query watermarks");
+            }
+            if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file + ".");
+            }
+        } catch (IOException ex) {
+            throw new OrchestraException("Could not write the checkpoint file " + file + ".", ex);
+        }
+        LOGGER.info("Committed {} query checkpoints.", staged.size());
+        staged.clear();
+    }
+
+    private long _floor(long timestamp) {
+        long result = timestamp - (timestamp % spanMillis);
+
+        return timestamp < 0 && result != timestamp ? result - spanMillis : result;
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
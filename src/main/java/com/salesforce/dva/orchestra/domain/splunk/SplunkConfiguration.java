@@ -34,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -55,11 +56,58 @@ import java.util.TreeSet;
  *   <li>password - The password with which to connect to Splunk. (required)</li>
  *   <li>timeout_sec - The time in seconds after which an attempt will be made to interrupt and shutdown the collector. Defaults to 10000.</li>
  *   <li>worker_count - The number of worker threads used to parallelize collection. Defaults to 3.</li>
+ *   <li>execution_mode - The manner in which queries are executed. One of <tt>normal</tt>, which creates a search job and polls it for completion,
+ *     <tt>oneshot</tt>, which blocks until the results of a small search are returned, or <tt>export</tt>, which streams the results of a large
+ *     search as they are produced. Defaults to normal.</li>
+ *   <li>execution_mode.([\d]+) - The execution mode of the query iteration having the given zero based index, overriding execution_mode for that
+ *     iteration only. Allows small and large queries of the same collection to be executed differently. No default.</li>
+ *   <li>output_mode - The format in which query results are read from Splunk. One of <tt>xml</tt>, <tt>json</tt> or <tt>csv</tt>. Defaults to
+ *     xml.</li>
+ *   <li>poll_initial_ms - The delay in milliseconds before a Splunk job is first polled for completion. Defaults to 500.</li>
+ *   <li>poll_backoff - The factor by which the delay between completion polls grows after each poll. Defaults to 2.</li>
+ *   <li>poll_max_ms - The maximum delay in milliseconds between completion polls. Defaults to 30000.</li>
+ *   <li>search_limit - The maximum number of searches to run concurrently. If not positive, the limit is the search quota of the user less the
+ *     number of the user's active searches. The limit never exceeds worker_count and is lowered while searches are being queued by Splunk. Defaults
+ *     to 0.</li>
+ *   <li>page_size - The number of results fetched per request when reading query results. Zero fetches all results in a single request. Defaults
+ *     to 50000.</li>
+ *   <li>page_workers - The number of result pages downloaded concurrently. Defaults to 3.</li>
+ *   <li>cache_dir - The directory in which parsed metric results are cached across runs. If set, the time modifiers of the base search of the
+ *     query are ignored. Instead, each run searches the cache_window_sec seconds preceding it, less any leading time buckets which are already
+ *     cached, and the cached metrics are collected in place of the searched ones. Cached metrics are only replayed for the same query and the same
+ *     scope, timestamp, key, metric, tag and invalid value configuration. Only supported for metric collection using the normal execution mode. No
+ *     default.</li>
+ *   <li>cache_window_sec - The length in seconds of the time range searched by each run when caching. Defaults to 1800.</li>
+ *   <li>cache_bucket_sec - The length in seconds of a cached time bucket. Defaults to 600.</li>
+ *   <li>cache_settle_sec - The time in seconds after the end of a bucket beyond which its results are assumed complete and may be cached. Defaults
+ *     to 600.</li>
+ *   <li>cache_ttl_sec - The time in seconds after which a cached bucket expires. Defaults to 86400.</li>
+ *   <li>cache_max_bytes - The maximum size of the cache in bytes. The least recently written buckets are evicted first. Defaults to 268435456.</li>
+ *   <li>cache_max_datapoints - The maximum number of settled datapoints recorded for caching by a single search. The results of a search exceeding
+ *     the limit are not cached, which bounds the memory used to record them. Defaults to 100000.</li>
+ *   <li>checkpoint_file - The file in which the high-watermark of each query is persisted. If set, the time modifiers of the base search of each
+ *     query are replaced by a time range starting at the watermark of the query, less the lateness margin, and ending at the time of the search.
+ *     Watermarks advance only once the collected data has been submitted to Argus. Only supported for the normal execution mode. No default.</li>
+ *   <li>checkpoint_lateness_sec - The margin in seconds preceding a watermark which is searched again to collect late arriving events. Defaults to
+ *     300.</li>
+ *   <li>checkpoint_initial_sec - The time range in seconds searched for a query which has no watermark. Defaults to 1800.</li>
+ *   <li>checkpoint_span_sec - The aggregation span in seconds of the queries, typically the span of their timechart or bin command. The start of
+ *     each checkpointed search is aligned down to a multiple of the span, so that its first bucket is aggregated over the whole span. Defaults to
+ *     60.</li>
  *   <li>annotation_collection - True if an annotation collection is to be performed. Defaults to false.</li>
+ *   <li>combined_collection - True if both metrics and annotations are to be collected from the results of a single execution of each query. Takes
+ *     precedence over annotation_collection. Defaults to false.</li>
  *   <li>annotation_type - String literal for the type of annotation, "release" for example. Required for annotation collection. No default.</li>
  *   <li>annotation_metricname - String literal for the annotation metric. Required for annotation collection. Defaults to "global.annotations".</li>
  *   <li>annotation_id_field - String literal for the annotation id field. Required for annotation collection. Defaults to "id".</li>
- *   <li>timestamp - String literal for the 'MM/dd/yyyy hh:mm:ss' formatted timestamp field. Defaults to 'time'</li>
+ *   <li>metric_series_window - The maximum number of metric series aggregated at once for a query. The oldest series is emitted when the limit is
+ *     reached. Defaults to 1000.</li>
+ *   <li>metric_datapoint_window - The maximum number of datapoints aggregated for a metric series before it is emitted. Defaults to 1000.</li>
+ *   <li>invalid_value - The handling of metric values which are not finite numbers. One of <tt>drop</tt> to discard the value, <tt>zero</tt> to
+ *     record zero in its place or <tt>tag</tt> to record zero in a separate series having the tag <tt>invalid=true</tt>. Defaults to drop.</li>
+ *   <li>timestamp - String literal for the timestamp field. Defaults to 'time'</li>
+ *   <li>timestamp_format - The format of the timestamp field. Either <tt>datetime</tt> for UTC 'MM/dd/yyyy HH:mm:ss' values or <tt>epoch</tt> for
+ *     epoch seconds having an optional fractional part. Defaults to datetime.</li>
  *   <li>scope - The format pattern used to construct The collection scope. It may consist of string literals, metric substitutions, parameter
  *     substitutions and key substitutions. No default.</li>
  *   <li>query - The query to execute. May contain <tt>MessageFormat</tt> parameters to be populated by <tt>param.*</tt> values. (required)</li>
@@ -71,6 +119,8 @@ import java.util.TreeSet;
  *     the <tt>metric.</tt> part of the key will be used as the raw metric name when applying the metric name format. For example, <tt>
  *     metric.mymetric=asplunkcolumn</tt> would map the raw metric name <tt>mymetric</tt> to the Splunk result set column named <tt>
  *     asplunkcolumn</tt>.</li>
+ *   <li>invalid.([\S]+) - The handling of invalid values for a single metric, overriding <tt>invalid_value</tt>. The portion after the <tt>
+ *     invalid.</tt> part of the key is the raw metric name. For example, <tt>invalid.mymetric=zero</tt>.</li>
  *   <li>tag.([\S]+) - The mapping between the Splunk result set column name and the Argus tag name. The portion after the <tt>tag.</tt> portion of
  *     the key will be used as the raw tag name when applying the tag name format. For example, <tt>tag.mytag=asplunkcolumn</tt> would map the raw tag
  *     name <tt>mytag</tt> to the Splunk result set column named <tt>asplunkcolumn</tt>.</li>
@@ -256,10 +306,106 @@ public class SplunkConfiguration {
         return result;
     }
 
+    /**
+     * Returns a canonical description of the properties which govern how query results are parsed into metrics. Two configurations having the same
+     * description parse the same results into the same metrics.
+     *
+     * @return  The description of the parser configuration. Will never be null.
+     */
+    String getParserConfiguration() {
+        Map<String, String> result = new TreeMap<>();
+
+        for (Parameter parameter : new Parameter[] { Parameter.SCOPE, Parameter.TIMESTAMP, Parameter.TIMESTAMP_FORMAT, Parameter.INVALID_VALUE }) {
+            result.put(parameter.name().toLowerCase(), getProperty(parameter));
+        }
+        for (String identifier : new String[] { "key", "metric", "tag", "invalid" }) {
+            for (Entry<String, String> entry : extractMapping(properties, identifier).entrySet()) {
+                result.put(identifier + "." + entry.getKey(), entry.getValue());
+            }
+        }
+        return result.toString();
+    }
+
     boolean isAnnotationCollection() {
         return Boolean.parseBoolean(getProperty(Parameter.ANNOTATION_COLLECTION));
     }
 
+    boolean isCombinedCollection() {
+        return Boolean.parseBoolean(getProperty(Parameter.COMBINED_COLLECTION));
+    }
+
+    ExecutionMode getExecutionMode() {
+        return toExecutionMode(getProperty(Parameter.EXECUTION_MODE));
+    }
+
+    /**
+     * Returns the execution mode of a query iteration, being its <tt>execution_mode.*</tt> override if one is configured, or else the execution
+     * mode of the collection.
+     *
+     * @param   iteration  The zero based index of the query iteration.
+     *
+     * @return  The execution mode of the query iteration. Will never be null.
+     */
+    ExecutionMode getExecutionMode(int iteration) {
+        String mode = properties.getProperty(Parameter.EXECUTION_MODE.name().toLowerCase() + "." + iteration);
+
+        return mode == null ? getExecutionMode() : toExecutionMode(mode);
+    }
+
+    OutputMode getOutputMode() {
+        String mode = getProperty(Parameter.OUTPUT_MODE);
+
+        try {
+            return OutputMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(MessageFormat.format("Unsupported output mode: {0}.", mode));
+        }
+    }
+
+    /**
+     * Returns the handling of invalid values for each metric having an <tt>invalid.*</tt> override.
+     *
+     * @return  The map of raw metric names to invalid value policies. Will never be null.
+     */
+    Map<String, InvalidValuePolicy> getInvalidValuePolicies() {
+        Map<String, InvalidValuePolicy> result = new HashMap<>();
+
+        for (Entry<String, String> entry : extractMapping(properties, "invalid").entrySet()) {
+            result.put(entry.getKey(), toInvalidValuePolicy(entry.getValue()));
+        }
+        return result;
+    }
+
+    InvalidValuePolicy getInvalidValuePolicy() {
+        return toInvalidValuePolicy(getProperty(Parameter.INVALID_VALUE));
+    }
+
+    TimestampFormat getTimestampFormat() {
+        String format = getProperty(Parameter.TIMESTAMP_FORMAT);
+
+        try {
+            return TimestampFormat.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(MessageFormat.format("Unsupported timestamp format: {0}.", format));
+        }
+    }
+
+    private static ExecutionMode toExecutionMode(String mode) {
+        try {
+            return ExecutionMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(MessageFormat.format("Unsupported execution mode: {0}.", mode));
+        }
+    }
+
+    private static InvalidValuePolicy toInvalidValuePolicy(String policy) {
+        try {
+            return InvalidValuePolicy.valueOf(policy.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(MessageFormat.format("Unsupported invalid value policy: {0}.", policy));
+        }
+    }
+
     //~ Enums ****************************************************************************************************************************************
 
     /**
@@ -281,8 +427,48 @@ public class SplunkConfiguration {
         TIMEOUT_SEC("10000"),
         /** The number of worker threads to use. Defaults to '3'. */
         WORKER_COUNT("3"),
+        /** The manner in which queries are executed. One of 'normal', 'oneshot' or 'export'. Defaults to 'normal'. */
+        EXECUTION_MODE("normal"),
+        /** The format in which query results are read. One of 'xml', 'json' or 'csv'. Defaults to 'xml'. */
+        OUTPUT_MODE("xml"),
+        /** The delay in milliseconds before a job is first polled for completion. Defaults to '500'. */
+        POLL_INITIAL_MS("500"),
+        /** The factor by which the delay between completion polls grows after each poll. Defaults to '2'. */
+        POLL_BACKOFF("2"),
+        /** The maximum delay in milliseconds between completion polls. Defaults to '30000'. */
+        POLL_MAX_MS("30000"),
+        /** The maximum number of concurrent searches. If not positive, the search quota of the user is used. Defaults to '0'. */
+        SEARCH_LIMIT("0"),
+        /** The number of results fetched per request. Zero fetches all results in a single request. Defaults to '50000'. */
+        PAGE_SIZE("50000"),
+        /** The number of result pages downloaded concurrently. Defaults to '3'. */
+        PAGE_WORKERS("3"),
+        /** The directory in which parsed metric results are cached. Caching is disabled if blank. No default. */
+        CACHE_DIR(""),
+        /** The length in seconds of the time range searched when caching. Defaults to '1800'. */
+        CACHE_WINDOW_SEC("1800"),
+        /** The length in seconds of a cached time bucket. Defaults to '600'. */
+        CACHE_BUCKET_SEC("600"),
+        /** The time in seconds after the end of a bucket beyond which it may be cached. Defaults to '600'. */
+        CACHE_SETTLE_SEC("600"),
+        /** The time in seconds after which a cached bucket expires. Defaults to '86400'. */
+        CACHE_TTL_SEC("86400"),
+        /** The maximum size of the result cache in bytes. Defaults to '268435456'. */
+        CACHE_MAX_BYTES("268435456"),
+        /** The maximum number of datapoints recorded for caching by a single search. Defaults to '100000'. */
+        CACHE_MAX_DATAPOINTS("100000"),
+        /** The file in which query watermarks are persisted. Checkpoints are disabled if blank. No default. */
+        CHECKPOINT_FILE(""),
+        /** The margin in seconds preceding a watermark which is searched again. Defaults to '300'. */
+        CHECKPOINT_LATENESS_SEC("300"),
+        /** The time range in seconds searched for a query which has no watermark. Defaults to '1800'. */
+        CHECKPOINT_INITIAL_SEC("1800"),
+        /** The aggregation span in seconds to which the start of a checkpointed search is aligned. Defaults to '60'. */
+        CHECKPOINT_SPAN_SEC("60"),
         /** Indicates the collection is an annotation collection. Defaults to false. */
         ANNOTATION_COLLECTION("false"),
+        /** Indicates that metrics and annotations are both collected from the same query results. Defaults to false. */
+        COMBINED_COLLECTION("false"),
         /** Label used to indicate the type of the annotation being collected. No default. */
         ANNOTATION_TYPE(""),
         /** Indicates the metric name on which the annotation should be stored. Defaults to 'global.annotations'. */
@@ -291,8 +477,16 @@ public class SplunkConfiguration {
         ANNOTATION_ID_FIELD("id"),
         /** The scope of the collection. Can contain string literal, parameter substitution or key substitution place holders. */
         SCOPE(""),
+        /** The maximum number of metric series aggregated at once for a query. Defaults to '1000'. */
+        METRIC_SERIES_WINDOW("1000"),
+        /** The maximum number of datapoints aggregated for a metric series before it is emitted. Defaults to '1000'. */
+        METRIC_DATAPOINT_WINDOW("1000"),
+        /** The handling of metric values which are not finite numbers. One of 'drop', 'zero' or 'tag'. Defaults to 'drop'. */
+        INVALID_VALUE("drop"),
         /** Indicates the timestamp field. Defaults to 'time'. */
         TIMESTAMP("time"),
+        /** The format of the timestamp field. One of 'datetime' or 'epoch'. Defaults to 'datetime'. */
+        TIMESTAMP_FORMAT("datetime"),
         /**
          * The query to execute. May have <tt>MessageFormat</tt> style substitution place holders to be populated by parameters specified in the
          * configuration.
@@ -306,5 +500,63 @@ public class SplunkConfiguration {
             this.defaultValue = defaultValue;
         }
     }
+
+    /**
+     * The manner in which Splunk queries are executed.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    enum ExecutionMode {
+
+        /** A search job is created and polled for completion, after which its results are fetched. */
+        NORMAL,
+        /** The search blocks until its results are returned. */
+        ONESHOT,
+        /** The results are streamed from the export endpoint as they are produced. */
+        EXPORT
+    }
+
+    /**
+     * The format in which Splunk query results are read.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    enum OutputMode {
+
+        /** Results are read as XML. */
+        XML,
+        /** Results are read as JSON. */
+        JSON,
+        /** Results are read as CSV. */
+        CSV
+    }
+
+    /**
+     * The format of the timestamp field in Splunk query results.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    enum TimestampFormat {
+
+        /** UTC timestamps in the MM/dd/yyyy HH:mm:ss layout. */
+        DATETIME,
+        /** Seconds since the epoch, optionally having a fractional part. */
+        EPOCH
+    }
+
+    /**
+     * The handling of metric values which are not finite numbers.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    enum InvalidValuePolicy {
+
+        /** The value is discarded. */
+        DROP,
+        /** Zero is recorded in place of the value. */
+        ZERO,
+        /** Zero is recorded in place of the value in a separate series tagged as invalid. */
+        TAG
+    }
 }
 /* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
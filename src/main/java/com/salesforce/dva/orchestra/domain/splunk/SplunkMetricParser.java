@@ -31,24 +31,43 @@
 package com.salesforce.dva.orchestra.domain.splunk;
 
 import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.salesforce.dva.orchestra.argus.entity.SeriesKey;
+import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.InvalidValuePolicy;
 import com.splunk.Event;
-import com.splunk.ResultsReader;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
 
 /**
- * The Splunk parser implementation for metric data collection.
+ * The Splunk parser implementation for metric data collection. Datapoints are aggregated per series within a bounded window. A series is emitted
+ * once it has accumulated the maximum number of datapoints, or when it is the oldest open series and the maximum number of open series has been
+ * reached. The datapoints of a series may therefore be emitted as several metrics, which Argus merges on write. Values are coerced to numbers as
+ * they are parsed and stored without conversion to text. Values which are not finite numbers are handled according to the invalid value policy
+ * of their metric, so that a single bad cell cannot cause Argus to reject a batch.
  *
  * @author  Tom Valine (tvaline@salesforce.com)
  */
 class SplunkMetricParser extends SplunkParser<Metric> {
 
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    /** The tag identifying series which record invalid values under the tag policy. */
+    static final String INVALID_TAG = "invalid";
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final int _seriesWindow;
+    private final int _datapointWindow;
+    private final InvalidValuePolicy _invalidValuePolicy;
+    private final Map<String, InvalidValuePolicy> _invalidValuePolicies;
+
     //~ Constructors *********************************************************************************************************************************
 
     /**
@@ -58,62 +77,135 @@ class SplunkMetricParser extends SplunkParser<Metric> {
      */
     SplunkMetricParser(SplunkConfiguration configuration) {
         super(configuration);
+        _seriesWindow = Integer.parseInt(configuration.getProperty(SplunkConfiguration.Parameter.METRIC_SERIES_WINDOW));
+        _datapointWindow = Integer.parseInt(configuration.getProperty(SplunkConfiguration.Parameter.METRIC_DATAPOINT_WINDOW));
+        requireArgument(_seriesWindow > 0, "The metric series window must be positive.");
+        requireArgument(_datapointWindow > 0, "The metric datapoint window must be positive.");
+        _invalidValuePolicy = configuration.getInvalidValuePolicy();
+        _invalidValuePolicies = configuration.getInvalidValuePolicies();
     }
 
     //~ Methods **************************************************************************************************************************************
 
     @Override
-    List<Metric> parse(ResultsReader reader, List<String> queryParams) {
-        Map<Metric, Map<Long, String>> metricMap = new HashMap<>();
-
-        if (reader != null) {
-            Iterator<Event> iterator = reader.iterator();
-
-            try {
-                while (iterator.hasNext()) {
-                    Event event = iterator.next();
+    Accumulator accumulate(final List<String> queryParams, final Sink<? super Metric> sink) {
+        return new Accumulator() {
+
+                /* Open series in the order they were opened. */
+                private final LinkedHashMap<SeriesKey, Metric> _window = new LinkedHashMap<>();
+                private int _invalidValues;
+
+                @Override
+                public void accept(Event event) throws InterruptedException {
+                    long timeStamp = parseTimestamp(event);
+                    String scope = parseScope(event, queryParams);
+                    Map<String, String> tags = null;
+                    Map<String, String> invalidTags = null;
+                    SeriesKey eventKey = null;
+
+                    for (Entry<String, String> entry : parseMetrics(event).entrySet()) {
+                        String metricName = entry.getKey();
+                        String metricValue = entry.getValue();
+
+                        if (metricValue == null) {
+                            continue;
+                        }
+
+                        double value = _coerce(metricValue);
+                        InvalidValuePolicy policy = null;
+
+                        if (Double.isNaN(value)) {
+                            _invalidValues++;
+                            policy = _getInvalidValuePolicy(metricName);
+                            LOGGER.debug("Invalid value {} for metric {} handled by policy {}.", metricValue, metricName, policy);
+                            if (policy == InvalidValuePolicy.DROP) {
+                                continue;
+                            }
+                            value = 0;
+                        }
+                        if (tags == null) {
+                            tags = parseTags(event);
+                        }
+                        if (policy == InvalidValuePolicy.TAG) {
+                            if (invalidTags == null) {
+                                invalidTags = new HashMap<>(tags);
+                                invalidTags.put(INVALID_TAG, Boolean.TRUE.toString());
+                            }
+                            _record(SeriesKey.of(scope, metricName, invalidTags), invalidTags, timeStamp, value);
+                        } else {
+                            if (eventKey == null) {
+                                eventKey = SeriesKey.of(scope, metricName, tags);
+                            }
+                            _record(eventKey.withMetric(metricName), tags, timeStamp, value);
+                        }
+                    }
+                }
 
-                    parseMetrics(event, queryParams, metricMap);
+                @Override
+                public void finish() throws InterruptedException {
+                    for (Metric series : _window.values()) {
+                        _emit(series);
+                    }
+                    _window.clear();
+                    if (_invalidValues > 0) {
+                        LOGGER.warn("Encountered {} invalid metric values for query parameters {}.", _invalidValues, queryParams);
+                    }
                 }
-            } finally {
-                try {
-                    reader.close();
-                } catch (IOException ex) {
-                    LOGGER.warn("Failed to close result set.");
-                    assert (false) : "This should never happen.";
+
+                private void _record(SeriesKey key, Map<String, String> tags, long timeStamp, double value) throws InterruptedException {
+                    Metric series = _window.get(key);
+
+                    if (series == null) {
+                        if (_window.size() >= _seriesWindow) {
+                            Iterator<Metric> eldest = _window.values().iterator();
+                            Metric oldest = eldest.next();
+
+                            eldest.remove();
+                            _emit(oldest);
+                        }
+                        series = new Metric(key.getScope(), key.getMetric());
+                        series.setTags(tags);
+                        _window.put(key, series);
+                    }
+                    series.addDatapoint(timeStamp, value);
+                    if (series.getDatapointCount() >= _datapointWindow) {
+                        _window.remove(key);
+                        _emit(series);
+                    }
                 }
-            }
-        }
-        for (Entry<Metric, Map<Long, String>> entry : metricMap.entrySet()) {
-            Metric metric = entry.getKey();
 
-            metric.setDatapoints(entry.getValue());
-            LOGGER.debug("Parsed metric {}.", metric);
-        }
-        return new ArrayList<>(metricMap.keySet());
+                private void _emit(Metric metric) throws InterruptedException {
+                    LOGGER.debug("Parsed metric {}.", metric);
+                    sink.put(metric);
+                }
+            };
     }
 
-    private void parseMetrics(Event event, List<String> queryParams, Map<Metric, Map<Long, String>> metricMap) {
-        long timeStamp = parseTimestamp(event);
-        String scope = parseScope(event, queryParams);
-
-        for (Entry<String, String> entry : parseMetrics(event).entrySet()) {
-            String metricName = entry.getKey();
-            String metricValue = entry.getValue();
+    private InvalidValuePolicy _getInvalidValuePolicy(String metricName) {
+        InvalidValuePolicy policy = _invalidValuePolicies.get(metricName);
 
-            if (metricValue != null) {
-                Metric metric = new Metric(scope, metricName);
+        if (policy == null) {
+            return _invalidValuePolicy;
+        }
+        return policy;
+    }
 
-                metric.setTags(parseTags(event));
+    /* Returns the value as a finite double, or NaN if it is not a plain decimal number. Java literals such as 3f or 0x1p3 are not numbers. */
+    private static double _coerce(String value) {
+        String trimmed = value.trim();
 
-                Map<Long, String> datapoints = metricMap.get(metric);
+        if (!DECIMAL.matcher(trimmed).matches()) {
+            return Double.NaN;
+        }
+        try {
+            double result = Double.parseDouble(trimmed);
 
-                if (datapoints == null) {
-                    datapoints = new TreeMap<>();
-                    metricMap.put(metric, datapoints);
-                }
-                datapoints.put(timeStamp, entry.getValue());
+            if (Double.isInfinite(result)) {
+                return Double.NaN;
             }
+            return result;
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
         }
     }
 }
@@ -38,6 +38,7 @@ import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.Parameter;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -64,6 +65,7 @@ public class SplunkNativeReader extends AbstractDomainReader {
     private final int workerCount;
     private final int port;
     private final long timeout;
+    private SplunkCheckpointStore checkpoints;
 
     //~ Constructors *********************************************************************************************************************************
 
@@ -94,13 +96,19 @@ public class SplunkNativeReader extends AbstractDomainReader {
         requireArgument(host != null && !host.isEmpty(), "Host cannot be null or empty");
         requireArgument(username != null && !username.isEmpty(), "User name cannot be null or empty.");
         requireArgument(password != null && !password.isEmpty(), "Password cannot br null or empty.");
-        if (config.isAnnotationCollection()) {
+        if (config.isAnnotationCollection() || config.isCombinedCollection()) {
             String annotationType = config.getProperty(Parameter.ANNOTATION_TYPE);
 
             requireArgument(annotationType != null && !annotationType.isEmpty(), "Annotation type cannot be null or empty.");
         }
 
-        SplunkService service = new SplunkService(username, password, host, port, timeout * 1000);
+        PollSchedule pollSchedule = new PollSchedule(Long.parseLong(config.getProperty(Parameter.POLL_INITIAL_MS)),
+            Double.parseDouble(config.getProperty(Parameter.POLL_BACKOFF)), Long.parseLong(config.getProperty(Parameter.POLL_MAX_MS)));
+        SplunkSessionPool sessions = new SplunkSessionPool(username, password, host, port, workerCount);
+        SplunkService service = new SplunkService(sessions, timeout * 1000, pollSchedule, config.getOutputMode());
+        SearchGovernor governor = new SearchGovernor(getSearchLimit(service));
+        SplunkResultPager pager = new SplunkResultPager(service, Integer.parseInt(config.getProperty(Parameter.PAGE_SIZE)),
+            Integer.parseInt(config.getProperty(Parameter.PAGE_WORKERS)));
 
         _logger.info("Starting Splunk collection.");
 
@@ -120,15 +128,25 @@ public class SplunkNativeReader extends AbstractDomainReader {
                     }
                 });
 
-            boolean annotations = Boolean.valueOf(config.getProperty(Parameter.ANNOTATION_COLLECTION));
-            Collection<SplunkWorker<? extends Object>> workers;
+            List<SplunkWorker.Target<?>> targets = new ArrayList<>(2);
 
-            if (annotations) {
-                workers = getWorkers(service, annotationQueue, config, new SplunkAnnotationParser(config));
+            if (config.isCombinedCollection() || !config.isAnnotationCollection()) {
+                targets.add(new SplunkWorker.Target<>(new SplunkMetricParser(config), metricQueue));
+            }
+            if (config.isCombinedCollection() || config.isAnnotationCollection()) {
+                targets.add(new SplunkWorker.Target<>(new SplunkAnnotationParser(config), annotationQueue));
+            }
+            SplunkResultCache cache = getResultCache();
+
+            checkpoints = getCheckpointStore();
+            requireArgument(cache == null || checkpoints == null, "The result cache and checkpoints cannot be used together.");
+
+            if (cache == null) {
+                executor.invokeAll(getWorkers(service, pager, governor, config, targets, checkpoints));
             } else {
-                workers = getWorkers(service, metricQueue, config, new SplunkMetricParser(config));
+                executor.invokeAll(getCachedWorkers(service, pager, governor, config, new SplunkWorker.Target<>(new SplunkMetricParser(config),
+                            metricQueue), cache));
             }
-            executor.invokeAll(workers);
             executor.shutdown();
             executor.awaitTermination(timeout, TimeUnit.SECONDS);
         } catch (Exception e) {
@@ -138,6 +156,7 @@ public class SplunkNativeReader extends AbstractDomainReader {
                 _logger.warn("Splunk collection timed out.");
             }
         } finally {
+            pager.close();
             closeResources(service, executor);
             done.set(true);
             _logger.info("Splunk reader finished.");
@@ -149,16 +168,93 @@ public class SplunkNativeReader extends AbstractDomainReader {
         return "SPLUNK";
     }
 
-    private <T> Collection<SplunkWorker<? extends Object>> getWorkers(SplunkService service, Queue<T> queue, SplunkConfiguration config,
-        SplunkParser<T> parser) {
-        Collection<SplunkWorker<? extends Object>> workers = new ArrayList<>();
+    private Collection<SplunkWorker> getWorkers(SplunkService service, SplunkResultPager pager, SearchGovernor governor,
+        SplunkConfiguration config, List<SplunkWorker.Target<?>> targets, SplunkCheckpointStore checkpoints) {
+        Collection<SplunkWorker> workers = new ArrayList<>();
+        int iteration = 0;
+
+        for (Map.Entry<String, List<String>> entry : config.getQueries().entrySet()) {
+            workers.add(new SplunkWorker(service, pager, governor, config.getExecutionMode(iteration++), entry.getKey(), entry.getValue(), targets,
+                    checkpoints));
+        }
+        return workers;
+    }
+
+    private Collection<SplunkWorker> getCachedWorkers(SplunkService service, SplunkResultPager pager, SearchGovernor governor,
+        SplunkConfiguration config, SplunkWorker.Target<Metric> target, SplunkResultCache cache) {
+        Collection<SplunkWorker> workers = new ArrayList<>();
 
         for (Map.Entry<String, List<String>> entry : config.getQueries().entrySet()) {
-            workers.add(new SplunkWorker<>(service, queue, entry.getKey(), entry.getValue(), parser));
+            workers.add(new SplunkWorker(service, pager, governor, entry.getKey(), entry.getValue(), target, cache));
         }
         return workers;
     }
 
+    /* Creates the result cache if one is configured. Caching is only supported for metric collections using the normal execution mode. */
+    private SplunkResultCache getResultCache() {
+        String directory = config.getProperty(Parameter.CACHE_DIR);
+
+        if (StringUtils.isBlank(directory)) {
+            return null;
+        }
+        requireArgument(!config.isAnnotationCollection() && !config.isCombinedCollection(),
+            "The result cache is only supported for metric collection.");
+        requireArgument(isNormalExecution(), "The result cache is only supported for the normal execution mode.");
+        long window = Long.parseLong(config.getProperty(Parameter.CACHE_WINDOW_SEC)) * 1000;
+        long bucket = Long.parseLong(config.getProperty(Parameter.CACHE_BUCKET_SEC)) * 1000;
+        long settle = Long.parseLong(config.getProperty(Parameter.CACHE_SETTLE_SEC)) * 1000;
+        long ttl = Long.parseLong(config.getProperty(Parameter.CACHE_TTL_SEC)) * 1000;
+        long maxBytes = Long.parseLong(config.getProperty(Parameter.CACHE_MAX_BYTES));
+        long maxDatapoints = Long.parseLong(config.getProperty(Parameter.CACHE_MAX_DATAPOINTS));
+
+        return new SplunkResultCache(new File(directory), window, bucket, settle, ttl, maxBytes, maxDatapoints, config.getParserConfiguration());
+    }
+
+    /* Creates the checkpoint store if one is configured. Checkpoints are only supported for the normal execution mode. */
+    private SplunkCheckpointStore getCheckpointStore() {
+        String file = config.getProperty(Parameter.CHECKPOINT_FILE);
+
+        if (StringUtils.isBlank(file)) {
+            return null;
+        }
+        requireArgument(isNormalExecution(), "Checkpoints are only supported for the normal execution mode.");
+        long lateness = Long.parseLong(config.getProperty(Parameter.CHECKPOINT_LATENESS_SEC)) * 1000;
+        long initial = Long.parseLong(config.getProperty(Parameter.CHECKPOINT_INITIAL_SEC)) * 1000;
+        long span = Long.parseLong(config.getProperty(Parameter.CHECKPOINT_SPAN_SEC)) * 1000;
+
+        return new SplunkCheckpointStore(new File(file), lateness, initial, span);
+    }
+
+    /* Indicates every query iteration is executed in the normal execution mode. */
+    private boolean isNormalExecution() {
+        int iterations = config.getQueries().size();
+
+        for (int i = 0; i < iterations; i++) {
+            if (config.getExecutionMode(i) != SplunkConfiguration.ExecutionMode.NORMAL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Uses the configured search limit, or else the search quota remaining to the user, but never more than the number of workers. */
+    private int getSearchLimit(SplunkService service) {
+        int limit = Integer.parseInt(config.getProperty(Parameter.SEARCH_LIMIT));
+
+        if (limit <= 0) {
+            try {
+                int quota = service.getSearchQuota();
+
+                limit = quota > 0 ? Math.max(1, quota - service.getActiveSearchCount()) : workerCount;
+                _logger.info("Splunk search quota is {}.  Limiting concurrent searches to {}.", quota, Math.min(limit, workerCount));
+            } catch (Exception ex) {
+                _logger.warn("Failed to read the Splunk search quota.  Limiting concurrent searches to the number of workers.", ex);
+                limit = workerCount;
+            }
+        }
+        return Math.min(limit, workerCount);
+    }
+
     private void closeResources(SplunkService service, ExecutorService executor) {
         if ((executor != null) && !executor.isTerminated()) {
             _logger.warn("Cleaning up collection workers.");
@@ -180,6 +276,13 @@ public class SplunkNativeReader extends AbstractDomainReader {
         }
     }
 
+    @Override
+    public void commit() {
+        if (checkpoints != null) {
+            checkpoints.commit();
+        }
+    }
+
     @Override
     public boolean isMetricCollectionDone() {
         return done.get();
@@ -32,17 +32,16 @@ package com.salesforce.dva.orchestra.domain.splunk;
 
 import com.salesforce.dva.orchestra.OrchestraException;
 import com.splunk.Event;
-import com.splunk.ResultsReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
 
 /**
- * Parses Splunk results.
+ * Parses Splunk results. Results are parsed one event at a time through an {@link Accumulator}, which allows several parsers to consume the events
+ * of a single result set. Parsed entities are handed to a {@link Sink} as soon as they are complete, so that they can be submitted while the
+ * remainder of the result set is still being read.
  *
  * @author  Tom Valine (tvaline@salesforce.com)
  */
@@ -54,11 +53,13 @@ abstract class SplunkParser<T> {
 
     //~ Instance fields ******************************************************************************************************************************
 
-    protected final SimpleDateFormat _dateFormatter;
+    protected final TimestampParser _timestampParser;
     protected final SplunkConfiguration _configuration;
     protected final Map<String, String> _keyMap;
     protected final Map<String, String> _metricMap;
     protected final Map<String, String> _tagMap;
+    private final SubstitutionTemplate _scopeTemplate;
+    private final ThreadLocal<StringBuilder> _buffer;
 
     //~ Constructors *********************************************************************************************************************************
 
@@ -70,24 +71,31 @@ abstract class SplunkParser<T> {
     SplunkParser(SplunkConfiguration configuration) {
         requireArgument(configuration != null, "Configuration cannot be null.");
         _configuration = configuration;
-        _dateFormatter = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
-        _dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        _timestampParser = new TimestampParser(configuration.getTimestampFormat());
         _keyMap = configuration.getKeyMapping();
         _metricMap = configuration.getMetricMapping();
         _tagMap = configuration.getTagMapping();
+        _scopeTemplate = new SubstitutionTemplate(configuration.getProperty(SplunkConfiguration.Parameter.SCOPE), _keyMap);
+        _buffer = new ThreadLocal<StringBuilder>() {
+
+                @Override
+                protected StringBuilder initialValue() {
+                    return new StringBuilder();
+                }
+            };
     }
 
     //~ Methods **************************************************************************************************************************************
 
     /**
-     * Parses the results from the reader according to the provided configuration.
+     * Creates an accumulator which parses the events of a single result set.
      *
-     * @param   reader       The reader to obtain results from.
-     * @param   queryParams  The parameters used for the query.
+     * @param   queryParams  The parameters used for the query. Cannot be null.
+     * @param   sink         The sink to which parsed entities are emitted. Cannot be null.
      *
-     * @return  The parsed results.
+     * @return  A new accumulator.
      */
-    abstract List<T> parse(ResultsReader reader, List<String> queryParams);
+    abstract Accumulator accumulate(List<String> queryParams, Sink<? super T> sink);
 
     /**
      * Parses the collection scope from the event.
@@ -98,7 +106,7 @@ abstract class SplunkParser<T> {
      * @return  The parsed scope.
      */
     protected String parseScope(Event event, List<String> queryParams) {
-        return applySubstitutions(event, _configuration.getProperty(SplunkConfiguration.Parameter.SCOPE), queryParams);
+        return _scopeTemplate.render(event, queryParams, _buffer.get());
     }
 
     /**
@@ -108,14 +116,10 @@ abstract class SplunkParser<T> {
      *
      * @return  The timestamp epoch milliseconds.
      *
-     * @throws  OrchestraException  If the event format does not conform to MM/dd/yyyy:HH:MM:SS.
+     * @throws  OrchestraException  If the timestamp field is missing or does not conform to the configured timestamp format.
      */
     protected long parseTimestamp(Event event) {
-        try {
-            return _dateFormatter.parse(event.get(_configuration.getProperty(SplunkConfiguration.Parameter.TIMESTAMP))).getTime();
-        } catch (ParseException ex) {
-            throw new OrchestraException(ex);
-        }
+        return _timestampParser.parse(event.get(_configuration.getProperty(SplunkConfiguration.Parameter.TIMESTAMP)));
     }
 
     /**
@@ -176,29 +180,49 @@ abstract class SplunkParser<T> {
         return _configuration.getProperty(SplunkConfiguration.Parameter.ANNOTATION_ID_FIELD);
     }
 
+    //~ Inner Interfaces *****************************************************************************************************************************
+
     /**
-     * Applies parameter and key substitutions to a string for a given event. This method replaces parameter and key references with their
-     * corresponding values from the event and the query parameters used to obtain the result set.
-     *
-     * @param   event        The event from which key values shall be obtained. Cannot be null.
-     * @param   pattern      The pattern on which substitution shall be performed. Cannot be null.
-     * @param   queryParams  The query parameters used to obtain the event result set. Cannot be null.
+     * Parses the events of a single result set, emitting entities to a sink as they are completed. Accumulators are not thread safe.
      *
-     * @return  The final text having all references substituted. Will never be null.
+     * @author  Tom Valine (tvaline@salesforce.com)
      */
-    protected String applySubstitutions(Event event, String pattern, List<String> queryParams) {
-        String result = pattern;
-
-        for (int i = 0; i < queryParams.size(); i++) {
-            result = result.replaceAll("\\$param\\." + i + "\\$", queryParams.get(i));
-        }
-        for (Map.Entry<String, String> keyEntry : _keyMap.entrySet()) {
-            int index = Integer.parseInt(keyEntry.getKey());
-            String value = event.get(keyEntry.getValue());
+    interface Accumulator {
+
+        /**
+         * Parses an event.
+         *
+         * @param   event  The event to parse. Cannot be null.
+         *
+         * @throws  InterruptedException  If interrupted while emitting a parsed entity.
+         */
+        void accept(Event event) throws InterruptedException;
+
+        /**
+         * Completes parsing, emitting any entities which are still being accumulated.
+         *
+         * @throws  InterruptedException  If interrupted while emitting a parsed entity.
+         */
+        void finish() throws InterruptedException;
+    }
 
-            result = result.replaceAll("\\$key\\." + index + "\\$", value);
-        }
-        return result;
+    /**
+     * Receives parsed entities.
+     *
+     * @param  <T>  The type of the parsed entities.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    interface Sink<T> {
+
+        /**
+         * Receives a parsed entity, waiting for capacity if required.
+         *
+         * @param   entity  The parsed entity. Will never be null.
+         *
+         * @throws  InterruptedException  If interrupted while waiting for capacity.
+         */
+        void put(T entity) throws InterruptedException;
     }
 }
 /* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
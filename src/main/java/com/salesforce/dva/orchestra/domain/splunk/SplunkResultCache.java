@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salesforce.dva.orchestra.OrchestraException;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.salesforce.dva.orchestra.argus.entity.SeriesKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * An on-disk cache of parsed metric results, keyed by query, parser configuration and time bucket. The time modifiers of the base search of a query
+ * are not part of its key, since the time range searched is governed by the cache. Buckets whose end lies further in the past than the settle time
+ * are assumed to be complete and are cached once searched. A subsequent search of the same query then only covers the time range following the
+ * cached buckets, and the cached metrics are replayed in place of the remainder. Entries expire after a time to live, and the least recently
+ * written entries are evicted once the cache exceeds its maximum size. The results of a search are recorded in memory until it completes, so a
+ * search whose settled results exceed the maximum number of datapoints is not cached.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class SplunkResultCache {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SplunkResultCache.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<Metric>> METRICS = new TypeReference<List<Metric>>() { };
+    private static final String SUFFIX = ".json";
+
+    static {
+        MAPPER.setVisibility(PropertyAccessor.GETTER, Visibility.ANY);
+        MAPPER.setVisibility(PropertyAccessor.SETTER, Visibility.ANY);
+        MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final File directory;
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final long settleMillis;
+    private final long ttlMillis;
+    private final long maxBytes;
+    private final long maxDatapoints;
+    private final String parserConfiguration;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new SplunkResultCache object, evicting any expired or excess entries.
+     *
+     * @param  directory            The cache directory. Created if it does not exist. Cannot be null.
+     * @param  windowMillis         The length of the time range searched by each query. Must be positive.
+     * @param  bucketMillis         The length of a cached time bucket. Must be positive.
+     * @param  settleMillis         The time after which the results of a bucket are assumed to be complete. Cannot be negative.
+     * @param  ttlMillis            The time to live of a cache entry. Must be positive.
+     * @param  maxBytes             The maximum size of the cache. Must be positive.
+     * @param  maxDatapoints        The maximum number of datapoints recorded by a single lookup. The results of a search exceeding it are not
+     *                              cached. Must be positive.
+     * @param  parserConfiguration  The description of the configuration used to parse the cached metrics, which is part of the key of every entry
+     *                              so that metrics parsed using a different configuration are never replayed. Cannot be null.
+     */
+    SplunkResultCache(File directory, long windowMillis, long bucketMillis, long settleMillis, long ttlMillis, long maxBytes,
+        long maxDatapoints, String parserConfiguration) {
+        requireArgument((this.directory = directory) != null, "The cache directory cannot be null.");
+        requireArgument((this.windowMillis = windowMillis) > 0, "The search window must be positive.");
+        requireArgument((this.bucketMillis = bucketMillis) > 0, "The cache bucket size must be positive.");
+        requireArgument((this.settleMillis = settleMillis) >= 0, "The settle time cannot be negative.");
+        requireArgument((this.ttlMillis = ttlMillis) > 0, "The cache time to live must be positive.");
+        requireArgument((this.maxBytes = maxBytes) > 0, "The maximum cache size must be positive.");
+        requireArgument((this.maxDatapoints = maxDatapoints) > 0, "The maximum number of cached datapoints must be positive.");
+        requireArgument((this.parserConfiguration = parserConfiguration) != null, "The parser configuration cannot be null.");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new OrchestraException("Could not create the result cache directory " + directory + ".");
+        }
+        evict();
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Looks up the cached buckets of the time range to search for a query.
+     *
+     * @param   query        The query text. Cannot be null.
+     * @param   queryParams  The parameters used to resolve the query, which may also be substituted into the parsed metrics. Cannot be null.
+     * @param   now          The current time in milliseconds, which ends the time range to search.
+     *
+     * @return  The lookup describing the time range remaining to be searched. Will never be null.
+     */
+    Lookup lookup(String query, List<String> queryParams, long now) {
+        requireArgument(query != null, "The query cannot be null.");
+        requireArgument(queryParams != null, "The query parameters cannot be null.");
+
+        File queryDirectory = new File(directory, _hash(SplunkCheckpointStore.removeTimeModifiers(query) + "\n" + queryParams + "\n" +
+                    parserConfiguration));
+        long settled = _bucket(now - settleMillis);
+        long bucket = _bucket(now - windowMillis);
+        List<Metric> cached = new ArrayList<>();
+
+        for (; bucket < settled; bucket += bucketMillis) {
+            List<Metric> metrics = _read(new File(queryDirectory, bucket + SUFFIX), now);
+
+            if (metrics == null) {
+                break;
+            }
+            cached.addAll(metrics);
+        }
+        return new Lookup(queryDirectory, bucket, Math.max(bucket, settled), now, cached);
+    }
+
+    /** Deletes expired entries and evicts the least recently written entries until the cache is within its maximum size. */
+    synchronized void evict() {
+        List<File> files = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long size = 0;
+        File[] queryDirectories = directory.listFiles();
+
+        for (File queryDirectory : queryDirectories == null ? new File[0] : queryDirectories) {
+            File[] entries = queryDirectory.listFiles();
+
+            for (File entry : entries == null ? new File[0] : entries) {
+                if (now - entry.lastModified() > ttlMillis) {
+                    _delete(entry);
+                } else {
+                    files.add(entry);
+                    size += entry.length();
+                }
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+
+                @Override
+                public int compare(File a, File b) {
+                    return Long.compare(a.lastModified(), b.lastModified());
+                }
+            });
+        for (int i = 0; size > maxBytes && i < files.size(); i++) {
+            size -= files.get(i).length();
+            _delete(files.get(i));
+        }
+    }
+
+    private long _bucket(long timestamp) {
+        long result = timestamp - (timestamp % bucketMillis);
+
+        return timestamp < 0 && result != timestamp ? result - bucketMillis : result;
+    }
+
+    private List<Metric> _read(File file, long now) {
+        if (!file.isFile()) {
+            return null;
+        }
+        if (now - file.lastModified() > ttlMillis) {
+            _delete(file);
+            return null;
+        }
+        try {
+            return MAPPER.readValue(file, METRICS);
+        } catch (IOException ex) {
+            LOGGER.warn("Discarding unreadable result cache entry " + file + ".", ex);
+            _delete(file);
+            return null;
+        }
+    }
+
+    private void _write(File queryDirectory, long bucket, List<Metric> metrics) {
+        File file = new File(queryDirectory, bucket + SUFFIX);
+        File temp = new File(queryDirectory, bucket + SUFFIX + ".tmp");
+
+        try {
+            if (!queryDirectory.isDirectory() && !queryDirectory.mkdirs()) {
+                throw new IOException("Could not create " + queryDirectory + ".");
+            }
+            MAPPER.writeValue(temp, metrics);
+            _delete(file);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp + ".");
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to write result cache entry " + file + ".", ex);
+            _delete(temp);
+        }
+    }
+
+    private static void _delete(File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("Failed to delete result cache entry {}.", file);
+        }
+    }
+
+    private static String _hash(String key) {
+        try {
+            StringBuilder result = new StringBuilder();
+
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(key.getBytes(Charset.forName("UTF-8")))) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new OrchestraException(ex);
+        }
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /**
+     * The result of a cache lookup for a single execution of a query. The lookup also records the metrics subsequently parsed from the search, so
+     * that the settled buckets it covers can be cached once the search has completed. Recording stops and nothing is cached once the recorded
+     * datapoints exceed the maximum.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    class Lookup {
+
+        private final File queryDirectory;
+        private final long searchStart;
+        private final long settled;
+        private final long searchEnd;
+        private final List<Metric> cached;
+        private final Map<Long, Map<SeriesKey, Metric>> recorded = new TreeMap<>();
+        private long datapoints;
+        private boolean oversized;
+
+        private Lookup(File queryDirectory, long searchStart, long settled, long searchEnd, List<Metric> cached) {
+            this.queryDirectory = queryDirectory;
+            this.searchStart = searchStart;
+            this.settled = settled;
+            this.searchEnd = searchEnd;
+            this.cached = cached;
+        }
+
+        /**
+         * Returns the metrics obtained from the cache.
+         *
+         * @return  The cached metrics. Will never be null, but may be empty.
+         */
+        List<Metric> getCached() {
+            return cached;
+        }
+
+        /**
+         * Returns the start of the time range remaining to be searched.
+         *
+         * @return  The start of the time range in milliseconds.
+         */
+        long getSearchStart() {
+            return searchStart;
+        }
+
+        /**
+         * Returns the end of the time range remaining to be searched.
+         *
+         * @return  The end of the time range in milliseconds.
+         */
+        long getSearchEnd() {
+            return searchEnd;
+        }
+
+        /**
+         * Wraps a sink so that the metrics it receives are recorded for caching.
+         *
+         * @param   sink  The sink to wrap. Cannot be null.
+         *
+         * @return  The recording sink.
+         */
+        SplunkParser.Sink<Metric> record(final SplunkParser.Sink<Metric> sink) {
+            return new SplunkParser.Sink<Metric>() {
+
+                    @Override
+                    public void put(Metric entity) throws InterruptedException {
+                        _record(entity);
+                        sink.put(entity);
+                    }
+                };
+        }
+
+        /** Caches the settled buckets covered by the search. Should only be called once the search has completed successfully. */
+        void commit() {
+            if (oversized) {
+                LOGGER.info("Not caching the results of a search exceeding {} settled datapoints.", maxDatapoints);
+                return;
+            }
+            for (long bucket = searchStart; bucket < settled; bucket += bucketMillis) {
+                List<Metric> metrics = new ArrayList<>();
+                Map<SeriesKey, Metric> series = recorded.get(bucket);
+
+                if (series != null) {
+                    metrics.addAll(series.values());
+                }
+                _write(queryDirectory, bucket, metrics);
+            }
+            evict();
+        }
+
+        private void _record(Metric metric) {
+            if (oversized) {
+                return;
+            }
+
+            SeriesKey key = SeriesKey.of(metric);
+
+            for (Map.Entry<Long, String> datapoint : metric.getDatapoints().entrySet()) {
+                long timestamp = datapoint.getKey();
+
+                if (timestamp < searchStart || timestamp >= settled) {
+                    continue;
+                }
+
+                long bucket = _bucket(timestamp);
+                Map<SeriesKey, Metric> series = recorded.get(bucket);
+
+                if (series == null) {
+                    series = new HashMap<>();
+                    recorded.put(bucket, series);
+                }
+
+                Metric copy = series.get(key);
+
+                if (copy == null) {
+                    copy = new Metric(metric.getScope(), metric.getMetric());
+                    copy.setTags(metric.getTags());
+                    copy.setDisplayName(metric.getDisplayName());
+                    copy.setUnits(metric.getUnits());
+                    series.put(key, copy);
+                }
+                copy.addDatapoint(timestamp, datapoint.getValue());
+                if (++datapoints > maxDatapoints) {
+                    oversized = true;
+                    recorded.clear();
+                    return;
+                }
+            }
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
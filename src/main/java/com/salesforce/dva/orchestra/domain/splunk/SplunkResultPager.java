@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.OrchestraException;
+import com.splunk.Event;
+import com.splunk.Job;
+import com.splunk.ResultsReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * Reads the results of completed Splunk jobs in fixed size pages. Pages are downloaded concurrently by a shared pool of page workers, while the
+ * events of each page are handed to the accumulators in result order on the calling thread. At most one page per page worker is held in memory for
+ * each job being read. A page size of zero disables paging, in which case the results are streamed from a single request.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class SplunkResultPager {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SplunkResultPager.class);
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final SplunkService service;
+    private final int pageSize;
+    private final int pageWindow;
+    private final ExecutorService executor;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new SplunkResultPager object.
+     *
+     * @param  service      The Splunk service used to fetch results. Cannot be null.
+     * @param  pageSize     The number of results per page. Zero disables paging. Cannot be negative.
+     * @param  pageWorkers  The number of pages downloaded concurrently. Must be positive.
+     */
+    SplunkResultPager(SplunkService service, int pageSize, int pageWorkers) {
+        requireArgument((this.service = service) != null, "The Splunk service cannot be null.");
+        requireArgument((this.pageSize = pageSize) >= 0, "The page size cannot be negative.");
+        requireArgument((this.pageWindow = pageWorkers) > 0, "The number of page workers must be positive.");
+        this.executor = pageSize == 0 ? null : Executors.newFixedThreadPool(pageWorkers, new ThreadFactory() {
+
+                    private final AtomicInteger worker = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread result = new Thread(runnable, "splunkresultpager-" + worker.getAndIncrement());
+
+                        result.setDaemon(true);
+                        return result;
+                    }
+                });
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Reads the results of a completed job, feeding each event to every accumulator.
+     *
+     * @param   job           The completed job. Cannot be null.
+     * @param   label         The query label used for informational purposes.
+     * @param   accumulators  The accumulators to feed. Cannot be null.
+     *
+     * @throws  IOException           If an error reading the results occurs.
+     * @throws  InterruptedException  If interrupted while waiting for a page or emitting a parsed entity.
+     */
+    void read(Job job, String label, List<SplunkParser.Accumulator> accumulators) throws IOException, InterruptedException {
+        if (executor == null) {
+            feed(service.getResults(job, 0, 0), accumulators);
+            return;
+        }
+
+        int total = service.getResultCount(job);
+        Deque<Future<List<Event>>> pages = new ArrayDeque<>(pageWindow);
+        int offset = 0;
+
+        LOGGER.debug("Reading {} results for {} in pages of {}.", total, label, pageSize);
+        try {
+            while (offset < total || !pages.isEmpty()) {
+                while (offset < total && pages.size() < pageWindow) {
+                    pages.add(executor.submit(new PageFetch(job, offset, Math.min(pageSize, total - offset))));
+                    offset += pageSize;
+                }
+                for (Event event : _get(pages.remove())) {
+                    for (SplunkParser.Accumulator accumulator : accumulators) {
+                        accumulator.accept(event);
+                    }
+                }
+            }
+        } finally {
+            for (Future<List<Event>> page : pages) {
+                page.cancel(true);
+            }
+        }
+    }
+
+    /** Stops the page workers. */
+    void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Feeds every event of a results reader to the accumulators, closing the reader once all of its events have been read.
+     *
+     * @param   reader        The results reader. Cannot be null.
+     * @param   accumulators  The accumulators to feed. Cannot be null.
+     *
+     * @throws  IOException           If an error reading the results occurs.
+     * @throws  InterruptedException  If interrupted while emitting a parsed entity.
+     */
+    static void feed(ResultsReader reader, List<SplunkParser.Accumulator> accumulators) throws IOException, InterruptedException {
+        try {
+            for (Event event : reader) {
+                for (SplunkParser.Accumulator accumulator : accumulators) {
+                    accumulator.accept(event);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<Event> _get(Future<List<Event>> page) throws IOException, InterruptedException {
+        try {
+            return page.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new OrchestraException(cause);
+        }
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /* Downloads and parses a single page of results. */
+    private class PageFetch implements Callable<List<Event>> {
+
+        private final Job job;
+        private final int offset;
+        private final int count;
+
+        private PageFetch(Job job, int offset, int count) {
+            this.job = job;
+            this.offset = offset;
+            this.count = count;
+        }
+
+        @Override
+        public List<Event> call() throws IOException {
+            List<Event> result = new ArrayList<>(count);
+
+            try(ResultsReader reader = service.getResults(job, offset, count)) {
+                for (Event event : reader) {
+                    result.add(event);
+                }
+            }
+            return result;
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -30,11 +30,13 @@
  */
 package com.salesforce.dva.orchestra.domain.splunk;
 
+import com.salesforce.dva.orchestra.domain.splunk.SplunkSessionPool.SessionCall;
 import com.splunk.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.text.MessageFormat;
 
@@ -51,16 +53,17 @@ public class SplunkService {
     //~ Static fields/initializers *******************************************************************************************************************
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SplunkService.class);
-    private static final long POLL_TIME_MS = 30000;
+    private static final String QUEUED = "QUEUED";
+    private static final String DONE = "DONE";
+    private static final String FAILED = "FAILED";
+    private static final PollSchedule DEFAULT_POLL_SCHEDULE = new PollSchedule(500, 2, 30000);
 
     //~ Instance fields ******************************************************************************************************************************
 
-    private final int port;
     private final long queryTimeout;
-    private final String userName;
-    private final String password;
-    private final String host;
-    private Service splunkService;
+    private final PollSchedule pollSchedule;
+    private final SplunkConfiguration.OutputMode outputMode;
+    private final SplunkSessionPool sessions;
 
     //~ Constructors *********************************************************************************************************************************
 
@@ -74,19 +77,29 @@ public class SplunkService {
      * @param  queryTimeout  The Splunk query timeout in milliseconds.
      */
     public SplunkService(String userName, String password, String host, int port, long queryTimeout) {
-        requireArgument((this.userName = userName) != null, "Username cannot be null.");
-        requireArgument((this.password = password) != null, "Password cannot be null.");
-        requireArgument((this.host = host) != null, "Hostname cannot be null.");
-        requireArgument((this.port = port) >= 0, "Illegal port specified.");
+        this(new SplunkSessionPool(userName, password, host, port, 1), queryTimeout, DEFAULT_POLL_SCHEDULE, SplunkConfiguration.OutputMode.XML);
+    }
+
+    /**
+     * Creates a new SplunkService object.
+     *
+     * @param  sessions      The pool of authenticated Splunk sessions to use. Cannot be null.
+     * @param  queryTimeout  The Splunk query timeout in milliseconds.
+     * @param  pollSchedule  The schedule on which jobs are polled for completion. Cannot be null.
+     * @param  outputMode    The format in which results are requested from Splunk. Cannot be null.
+     */
+    SplunkService(SplunkSessionPool sessions, long queryTimeout, PollSchedule pollSchedule, SplunkConfiguration.OutputMode outputMode) {
+        requireArgument((this.sessions = sessions) != null, "Session pool cannot be null.");
         requireArgument((this.queryTimeout = queryTimeout) > 0, "Query timeout must be greated than 0.");
-        login();
+        requireArgument((this.pollSchedule = pollSchedule) != null, "Poll schedule cannot be null.");
+        requireArgument((this.outputMode = outputMode) != null, "Output mode cannot be null.");
     }
 
     //~ Methods **************************************************************************************************************************************
 
     /** Logs out of the Splunk service and terminates the connections. */
     public void close() {
-        splunkService.logout();
+        sessions.close();
     }
 
     /**
@@ -95,44 +108,300 @@ public class SplunkService {
      * @param   query  The query to execute. Cannot be null.
      * @param   label  The query label used for informational purposes.
      *
-     * @return  The results XML. Cannot be null.
+     * @return  The results. Cannot be null.
      *
      * @throws  IOException  If an error reading the results occurs.
      */
     public ResultsReader querySplunkForEvents(String query, String label) throws IOException {
-        assert (queryTimeout > 0) : "Timeout should not be less than or equal to 0.";
+        Job job = dispatch(query);
+
+        return await(job, label) ? getResults(job, 0, 0) : getNullResults();
+    }
+
+    /**
+     * Dispatches a Splunk search job.
+     *
+     * @param   query  The query to execute. Cannot be null.
+     *
+     * @return  The dispatched job. Will never be null.
+     *
+     * @throws  IOException  If the job could not be dispatched.
+     */
+    public Job dispatch(String query) throws IOException {
+        return dispatch(query, new JobArgs());
+    }
+
+    /**
+     * Dispatches a Splunk search job over a time range. Time modifiers within the query take precedence over the time range.
+     *
+     * @param   query     The query to execute. Cannot be null.
+     * @param   earliest  The inclusive start of the time range in epoch milliseconds.
+     * @param   latest    The exclusive end of the time range in epoch milliseconds.
+     *
+     * @return  The dispatched job. Will never be null.
+     *
+     * @throws  IOException  If the job could not be dispatched.
+     */
+    public Job dispatch(String query, long earliest, long latest) throws IOException {
+        requireArgument(earliest <= latest, "The earliest time cannot follow the latest time.");
 
         JobArgs jobArgs = new JobArgs();
-        JobResultsArgs resultArgs = new JobResultsArgs();
 
-        jobArgs.setExecutionMode(JobArgs.ExecutionMode.NORMAL);
-        resultArgs.setCount(0);
+        jobArgs.setEarliestTime(String.valueOf(earliest / 1000));
+        jobArgs.setLatestTime(String.valueOf(latest / 1000));
+        return dispatch(query, jobArgs);
+    }
 
-        Job job = splunkService.getJobs().create(query, jobArgs);
-        long timeout = queryTimeout;
+    /**
+     * Waits for a job to complete, finalizing it if the query timeout elapses or the calling thread is interrupted. The job is polled according to
+     * the poll schedule of the service.
+     *
+     * @param   job    The job to wait for. Cannot be null.
+     * @param   label  The query label used for informational purposes.
+     *
+     * @return  True if the job completed, false if it was terminated.
+     *
+     * @throws  IOException  If the status of the job could not be obtained.
+     */
+    public boolean await(Job job, String label) throws IOException {
+        return await(job, label, null);
+    }
+
+    /**
+     * Waits for a job to complete, finalizing it if the query timeout elapses or the calling thread is interrupted. The job is polled according to
+     * the poll schedule of the service, and the search permit is notified of the dispatch state observed on each poll.
+     *
+     * @param   job     The job to wait for. Cannot be null.
+     * @param   label   The query label used for informational purposes.
+     * @param   permit  The search permit under which the job was dispatched. May be null.
+     *
+     * @return  True if the job completed, false if it was terminated.
+     *
+     * @throws  IOException  If the status of the job could not be obtained.
+     */
+    boolean await(Job job, String label, SearchGovernor.Permit permit) throws IOException {
+        assert (queryTimeout > 0) : "Timeout should not be less than or equal to 0.";
+
+        long deadline = System.currentTimeMillis() + queryTimeout;
+        int polls = 0;
         boolean terminated = false;
 
-        while (!(job.isReady() && job.isDone()) && !terminated) {
-            if (timeout <= 0) {
+        while (!isComplete(job) && !terminated) {
+            long remaining = deadline - System.currentTimeMillis();
+
+            if (remaining <= 0) {
                 LOGGER.warn(MessageFormat.format("Query for {0} timed out after {1,number,0.00}s", label, getRunDuration(job)));
-                job = terminateJob(job);
+                terminateJob(job);
                 terminated = true;
             } else {
+                long delay = pollSchedule.getDelay(polls++);
+
+                if (permit != null) {
+                    permit.polled(QUEUED.equalsIgnoreCase(job.getDispatchState()));
+                }
+
                 try {
-                    Thread.sleep(POLL_TIME_MS);
-                    LOGGER.info(MessageFormat.format("Awaiting results for {0}.  Query has been running for {1,number,0.00}s.", label,
-                            getRunDuration(job)));
+                    Thread.sleep(Math.min(delay, remaining));
+                    if (delay == pollSchedule.getMaxDelay()) {
+                        LOGGER.info(MessageFormat.format("Awaiting results for {0}.  Query has been running for {1,number,0.00}s.", label,
+                                getRunDuration(job)));
+                    }
                 } catch (InterruptedException ex) {
                     Thread.currentThread().interrupt();
                     LOGGER.warn(MessageFormat.format("Received a request to interrupt and terminate the query for {0}.", label));
-                    job = terminateJob(job);
+                    terminateJob(job);
                     terminated = true;
                 }
-            }
-            timeout -= POLL_TIME_MS;
+            } // end if-else
         }
         LOGGER.debug(MessageFormat.format("Query for {0} has completed.", label));
-        return terminated ? getNullResults() : new ResultsReaderXml(job.getResults(resultArgs));
+        return !terminated;
+    }
+
+    /**
+     * Executes a Splunk query as a oneshot search, which blocks until the search completes and returns its results without creating a job that must
+     * be polled. Suited to queries producing small result sets. This method returns a reader object which must be disposed of by calling code when
+     * it is no longer needed.
+     *
+     * @param   query  The query to execute. Cannot be null.
+     *
+     * @return  The results. Will never be null.
+     *
+     * @throws  IOException  If an error reading the results occurs.
+     */
+    public ResultsReader oneshot(final String query) throws IOException {
+        requireArgument(query != null, "Query cannot be null.");
+
+        final Args oneshotArgs = new Args();
+
+        oneshotArgs.put("count", 0);
+        oneshotArgs.put("output_mode", outputMode.name().toLowerCase());
+        return sessions.execute(new SessionCall<ResultsReader>() {
+
+                @Override
+                public ResultsReader call(Service session) throws IOException {
+                    return openResults(session.oneshotSearch(query, oneshotArgs));
+                }
+            });
+    }
+
+    /**
+     * Executes a Splunk query using the export endpoint, which streams results as they are produced by the search. Suited to queries retrieving
+     * large numbers of raw events. This method returns a reader object which must be disposed of by calling code when it is no longer needed.
+     *
+     * @param   query  The query to execute. Cannot be null.
+     *
+     * @return  The results. Will never be null.
+     *
+     * @throws  IOException  If an error reading the results occurs.
+     */
+    public ResultsReader export(final String query) throws IOException {
+        requireArgument(query != null, "Query cannot be null.");
+
+        final JobExportArgs exportArgs = new JobExportArgs();
+
+        exportArgs.setSearchMode(JobExportArgs.SearchMode.NORMAL);
+        exportArgs.setOutputMode(JobExportArgs.OutputMode.valueOf(outputMode.name()));
+        return sessions.execute(new SessionCall<ResultsReader>() {
+
+                @Override
+                public ResultsReader call(Service session) throws IOException {
+                    return openResults(session.export(query, exportArgs));
+                }
+            });
+    }
+
+    /**
+     * Returns the number of results produced by a completed job.
+     *
+     * @param   job  The completed job. Cannot be null.
+     *
+     * @return  The number of results.
+     *
+     * @throws  IOException  If the status of the job could not be obtained.
+     */
+    public int getResultCount(final Job job) throws IOException {
+        return sessions.execute(job.getService(), new SessionCall<Integer>() {
+
+                @Override
+                public Integer call(Service session) {
+                    return job.getResultCount();
+                }
+            });
+    }
+
+    /**
+     * Fetches a window of the results of a completed job. This method returns a reader object which must be disposed of by calling code when it is
+     * no longer needed. It may be called concurrently to fetch several windows of the same job. Each window is fetched using a session leased from
+     * the pool rather than the session to which the job is bound, so that concurrent fetches neither share a session nor log in again at once.
+     *
+     * @param   job     The completed job. Cannot be null.
+     * @param   offset  The index of the first result to fetch.
+     * @param   count   The maximum number of results to fetch. Zero fetches all results following the offset.
+     *
+     * @return  The results. Will never be null.
+     *
+     * @throws  IOException  If an error reading the results occurs.
+     */
+    public ResultsReader getResults(Job job, int offset, int count) throws IOException {
+        requireArgument(offset >= 0, "Offset cannot be negative.");
+        requireArgument(count >= 0, "Count cannot be negative.");
+
+        final JobResultsArgs resultArgs = new JobResultsArgs();
+
+        resultArgs.setOffset(offset);
+        resultArgs.setCount(count);
+        resultArgs.setOutputMode(JobResultsArgs.OutputMode.valueOf(outputMode.name()));
+
+        final String resultsPath = job.getPath() + "/results";
+
+        return sessions.execute(new SessionCall<ResultsReader>() {
+
+                @Override
+                public ResultsReader call(Service session) throws IOException {
+                    return openResults(session.get(resultsPath, resultArgs).getContent());
+                }
+            });
+    }
+
+    /**
+     * Returns the concurrent search quota of the user, being the largest search job quota of the user's roles.
+     *
+     * @return  The search quota. Zero if the user has no quota.
+     *
+     * @throws  IOException  If the quota could not be obtained.
+     */
+    public int getSearchQuota() throws IOException {
+        return sessions.execute(new SessionCall<Integer>() {
+
+                @Override
+                public Integer call(Service session) {
+                    int result = 0;
+
+                    for (String roleName : session.getUsers().get(session.getUsername()).getRoles()) {
+                        Role role = session.getRoles().get(roleName);
+
+                        if (role != null) {
+                            result = Math.max(result, role.getSearchJobsQuota());
+                        }
+                    }
+                    return result;
+                }
+            });
+    }
+
+    /**
+     * Returns the number of the user's search jobs which are currently queued or running. The jobs are listed in a single request filtered by Splunk
+     * to the unfinished jobs, and the dispatch state of each is read from the listing rather than by refreshing the job.
+     *
+     * @return  The number of active search jobs.
+     *
+     * @throws  IOException  If the jobs could not be obtained.
+     */
+    public int getActiveSearchCount() throws IOException {
+        final CollectionArgs listArgs = new CollectionArgs();
+
+        listArgs.setCount(0);
+        listArgs.setSearch("isDone=0");
+        return sessions.execute(new SessionCall<Integer>() {
+
+                @Override
+                public Integer call(Service session) {
+                    int result = 0;
+
+                    for (Job job : session.getJobs(listArgs).values()) {
+                        String state = job.getDispatchState();
+
+                        if (!DONE.equalsIgnoreCase(state) && !FAILED.equalsIgnoreCase(state)) {
+                            result++;
+                        }
+                    }
+                    return result;
+                }
+            });
+    }
+
+    private Job dispatch(final String query, final JobArgs jobArgs) throws IOException {
+        requireArgument(query != null, "Query cannot be null.");
+        jobArgs.setExecutionMode(JobArgs.ExecutionMode.NORMAL);
+        return sessions.execute(new SessionCall<Job>() {
+
+                @Override
+                public Job call(Service session) {
+                    return session.getJobs().create(query, jobArgs);
+                }
+            });
+    }
+
+    /* Helper to check job completion using the session to which the job is bound. */
+    private boolean isComplete(final Job job) throws IOException {
+        return sessions.execute(job.getService(), new SessionCall<Boolean>() {
+
+                @Override
+                public Boolean call(Service session) {
+                    return job.isReady() && job.isDone();
+                }
+            });
     }
 
     private Job terminateJob(Job job) {
@@ -153,16 +422,16 @@ public class SplunkService {
         }
     }
 
-    /* Helper method to login. */
-    private void login() {
-        ServiceArgs loginArgs = new ServiceArgs();
-
-        Service.setSslSecurityProtocol(SSLSecurityProtocol.TLSv1_2);
-        loginArgs.setUsername(userName);
-        loginArgs.setPassword(password);
-        loginArgs.setHost(host);
-        loginArgs.setPort(port);
-        splunkService = Service.connect(loginArgs);
+    /* Helper to create the results reader matching the output mode. */
+    private ResultsReader openResults(InputStream results) throws IOException {
+        switch (outputMode) {
+            case JSON:
+                return new ResultsReaderJson(results);
+            case CSV:
+                return new ResultsReaderCsv(results);
+            default:
+                return new ResultsReaderXml(results);
+        }
     }
 
     private ResultsReader getNullResults() {
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.splunk.HttpException;
+import com.splunk.SSLSecurityProtocol;
+import com.splunk.Service;
+import com.splunk.ServiceArgs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * A pool of authenticated Splunk sessions. A single login is performed and its session key is shared by every session in the pool, each of which
+ * maintains its own connection state so that concurrent callers do not contend for a single SDK service instance. Connections are kept alive and
+ * reused by the underlying HTTP connection cache. If a call is rejected because the session key has expired, the pool logs in again, updates the
+ * session key of every session and retries the call once.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class SplunkSessionPool {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SplunkSessionPool.class);
+    private static final int UNAUTHORIZED = 401;
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final ServiceArgs loginArgs;
+    private final List<Service> sessions;
+    private final BlockingQueue<Service> idle;
+    private String token;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new SplunkSessionPool object and logs into Splunk.
+     *
+     * @param  userName  The user name used to access Splunk. Cannot be null.
+     * @param  password  The password used to access Splunk. Cannot be null.
+     * @param  host      The host name of the Splunk endpoint. Cannot be null.
+     * @param  port      The port number of the Splunk endpoint. Cannot be negative.
+     * @param  size      The number of sessions in the pool. Must be positive.
+     */
+    SplunkSessionPool(String userName, String password, String host, int port, int size) {
+        requireArgument(userName != null, "Username cannot be null.");
+        requireArgument(password != null, "Password cannot be null.");
+        requireArgument(host != null, "Hostname cannot be null.");
+        requireArgument(port >= 0, "Illegal port specified.");
+        requireArgument(size > 0, "The session pool size must be positive.");
+        Service.setSslSecurityProtocol(SSLSecurityProtocol.TLSv1_2);
+        loginArgs = new ServiceArgs();
+        loginArgs.setUsername(userName);
+        loginArgs.setPassword(password);
+        loginArgs.setHost(host);
+        loginArgs.setPort(port);
+        sessions = new ArrayList<>(size);
+        idle = new ArrayBlockingQueue<>(size);
+
+        Service primary = Service.connect(loginArgs);
+
+        token = primary.getToken();
+        sessions.add(primary);
+        for (int i = 1; i < size; i++) {
+            Service session = new Service(loginArgs);
+
+            session.setToken(token);
+            sessions.add(session);
+        }
+        idle.addAll(sessions);
+    }
+
+    /**
+     * Creates a new SplunkSessionPool object holding a single session which has already logged into Splunk.
+     *
+     * @param  session    The authenticated session. Cannot be null.
+     * @param  loginArgs  The arguments used to log in again if the session key expires. Cannot be null.
+     */
+    SplunkSessionPool(Service session, ServiceArgs loginArgs) {
+        requireArgument(session != null, "Session cannot be null.");
+        requireArgument((this.loginArgs = loginArgs) != null, "Login arguments cannot be null.");
+        token = session.getToken();
+        sessions = new ArrayList<>(1);
+        idle = new ArrayBlockingQueue<>(1);
+        sessions.add(session);
+        idle.addAll(sessions);
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Performs a call using an idle session, waiting for one to become available if required.
+     *
+     * @param   <T>   The result type of the call.
+     * @param   call  The call to perform. Cannot be null.
+     *
+     * @return  The result of the call.
+     *
+     * @throws  IOException  If the call fails or the calling thread is interrupted while waiting for a session.
+     */
+    <T> T execute(SessionCall<T> call) throws IOException {
+        Service session;
+
+        try {
+            session = idle.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a Splunk session.");
+        }
+        try {
+            return execute(session, call);
+        } finally {
+            idle.add(session);
+        }
+    }
+
+    /**
+     * Performs a call using a specific session, such as the session to which a job is bound. The session need not be idle.
+     *
+     * @param   <T>      The result type of the call.
+     * @param   session  The session to use. Cannot be null.
+     * @param   call     The call to perform. Cannot be null.
+     *
+     * @return  The result of the call.
+     *
+     * @throws  IOException  If the call fails.
+     */
+    <T> T execute(Service session, SessionCall<T> call) throws IOException {
+        String usedToken = getToken();
+
+        try {
+            return call.call(session);
+        } catch (HttpException ex) {
+            if (ex.getStatus() != UNAUTHORIZED) {
+                throw ex;
+            }
+            relogin(usedToken);
+            return call.call(session);
+        }
+    }
+
+    /** Logs out of Splunk. */
+    void close() {
+        sessions.get(0).logout();
+    }
+
+    private synchronized String getToken() {
+        return token;
+    }
+
+    /* Logs in again unless another caller has already replaced the expired session key. */
+    private synchronized void relogin(String expiredToken) {
+        if (token != null && !token.equals(expiredToken)) {
+            return;
+        }
+        LOGGER.info("Splunk session expired.  Logging in again.");
+
+        Service primary = sessions.get(0);
+
+        primary.login();
+        token = primary.getToken();
+        for (Service session : sessions) {
+            session.setToken(token);
+        }
+    }
+
+    //~ Inner Interfaces *****************************************************************************************************************************
+
+    /**
+     * A call performed using a Splunk session.
+     *
+     * @param  <T>  The result type of the call.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    interface SessionCall<T> {
+
+        /**
+         * Performs the call.
+         *
+         * @param   session  The session to use. Will never be null.
+         *
+         * @return  The result of the call.
+         *
+         * @throws  IOException  If the call fails.
+         */
+        T call(Service session) throws IOException;
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -30,25 +30,26 @@
  */
 package com.salesforce.dva.orchestra.domain.splunk;
 
-import com.splunk.ResultsReader;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.splunk.Job;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 
 import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
 
 /**
- * Performs the actual Splunk query for a pod.
- *
- * @param   <T>  The specific type of data this worker will process.
+ * Performs the actual Splunk query for a pod. The events of the query result set are fed to the parser of each of the worker's targets, so that a
+ * single query can populate several queues.
  *
  * @author  Anand Subramanian (a.subramanian@salesforce.com)
  * @author  Tom Valine (tvaline@salesforce.com)
  */
-public class SplunkWorker<T> implements Callable<Boolean> {
+public class SplunkWorker implements Callable<Boolean> {
 
     //~ Static fields/initializers *******************************************************************************************************************
 
@@ -56,11 +57,16 @@ public class SplunkWorker<T> implements Callable<Boolean> {
 
     //~ Instance fields ******************************************************************************************************************************
 
-    private final Queue<T> queue;
     private final SplunkService service;
+    private final SplunkResultPager pager;
+    private final SearchGovernor governor;
+    private final SplunkConfiguration.ExecutionMode executionMode;
     private final String query;
     private final List<String> queryParams;
-    private final SplunkParser parser;
+    private final List<Target<?>> targets;
+    private final Target<Metric> cachedTarget;
+    private final SplunkResultCache cache;
+    private final SplunkCheckpointStore checkpoints;
 
     //~ Constructors *********************************************************************************************************************************
 
@@ -68,25 +74,61 @@ public class SplunkWorker<T> implements Callable<Boolean> {
      * Creates a new Splunk worker.
      *
      * @param  service          The Splunk service instance to use. Cannot be null.
-     * @param  queue            The queue in which to collect data points.
+     * @param  pager            The pager used to read the query results. Cannot be null.
+     * @param  governor         The governor limiting the number of concurrent searches. Cannot be null.
+     * @param  executionMode    The manner in which the query is executed. Cannot be null.
      * @param  query            The resolved query to execute.
      * @param  queryParameters  The list of parameters used to resolve the query being executed.
-     * @param  parser           The Splunk configuration to use.
+     * @param  targets          The parsers and queues to populate from the query results. Cannot be null or empty.
+     * @param  checkpoints      The store governing the time range searched in the normal execution mode. May be null, in which case the time range
+     *                          is specified by the query.
+     */
+    SplunkWorker(SplunkService service, SplunkResultPager pager, SearchGovernor governor, SplunkConfiguration.ExecutionMode executionMode,
+        String query, List<String> queryParameters, List<Target<?>> targets, SplunkCheckpointStore checkpoints) {
+        requireArgument((this.service = service) != null, "The Splunk service cannot be null.");
+        requireArgument((this.pager = pager) != null, "The result pager cannot be null.");
+        requireArgument((this.governor = governor) != null, "The search governor cannot be null.");
+        requireArgument((this.executionMode = executionMode) != null, "The execution mode cannot be null.");
+        requireArgument((this.query = query) != null, "The query cannot be null.");
+        requireArgument((this.queryParams = queryParameters) != null, "The query parameters cannot be null.");
+        requireArgument((this.targets = targets) != null && !targets.isEmpty(), "At least one target is required.");
+        this.cachedTarget = null;
+        this.cache = null;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Creates a new Splunk worker which collects metrics using a result cache. Only the time range which is not cached is searched, and the
+     * remaining metrics are obtained from the cache.
+     *
+     * @param  service          The Splunk service instance to use. Cannot be null.
+     * @param  pager            The pager used to read the query results. Cannot be null.
+     * @param  governor         The governor limiting the number of concurrent searches. Cannot be null.
+     * @param  query            The resolved query to execute. The time modifiers of its base search are ignored. Cannot be null.
+     * @param  queryParameters  The list of parameters used to resolve the query being executed.
+     * @param  target           The metric parser and queue to populate. Cannot be null.
+     * @param  cache            The result cache. Cannot be null.
      */
-    SplunkWorker(SplunkService service, Queue<T> queue, String query, List<String> queryParameters, SplunkParser<T> parser) {
-        requireArgument((this.queue = queue) != null, "The queue cannot be null.");
+    SplunkWorker(SplunkService service, SplunkResultPager pager, SearchGovernor governor, String query, List<String> queryParameters,
+        Target<Metric> target, SplunkResultCache cache) {
         requireArgument((this.service = service) != null, "The Splunk service cannot be null.");
+        requireArgument((this.pager = pager) != null, "The result pager cannot be null.");
+        requireArgument((this.governor = governor) != null, "The search governor cannot be null.");
         requireArgument((this.query = query) != null, "The query cannot be null.");
         requireArgument((this.queryParams = queryParameters) != null, "The query parameters cannot be null.");
-        requireArgument((this.parser = parser) != null, "The parser cannot be null.");
+        requireArgument((this.cachedTarget = target) != null, "The target cannot be null.");
+        requireArgument((this.cache = cache) != null, "The result cache cannot be null.");
+        this.executionMode = SplunkConfiguration.ExecutionMode.NORMAL;
+        this.targets = Collections.<Target<?>>singletonList(target);
+        this.checkpoints = null;
     }
 
     //~ Methods **************************************************************************************************************************************
 
     /**
-     * Performs the query.
+     * Performs the query, queueing parsed entities as the results are read.
      *
-     * @return  The results of the query. Will not be null, but may be empty.
+     * @return  True if the query results were read and queued in their entirety.
      */
     @Override
     public Boolean call() {
@@ -94,33 +136,138 @@ public class SplunkWorker<T> implements Callable<Boolean> {
 
         try {
             LOGGER.info("Dispatching query using: {}.", params);
-            queue.addAll(querySplunk());
+            if (cache == null) {
+                querySplunk(params);
+            } else {
+                queryCached(params);
+            }
             return true;
         } catch (IOException ex) {
             LOGGER.warn(MessageFormat.format("An error occurred reading the result for {0}.  Aborting attempt.", params), ex);
             assert (false) : "This should never happen.";
+        } catch (InterruptedException ex) {
+            LOGGER.warn(MessageFormat.format("Interrupted while queueing the results for {0}.  Aborting attempt.", params));
+            Thread.currentThread().interrupt();
         } // end try-catch
         return false;
     }
 
-    private List<T> querySplunk() throws IOException {
-        List<T> results = new ArrayList<>();
-        ResultsReader resultSet = null;
+    private void querySplunk(String params) throws IOException, InterruptedException {
+        List<SplunkParser.Accumulator> accumulators = new ArrayList<>(targets.size());
+
+        for (Target<?> target : targets) {
+            accumulators.add(target.start(queryParams));
+        }
+
+        SearchGovernor.Permit permit = governor.acquire();
+        long watermark = -1;
+
+        try {
+            switch (executionMode) {
+                case ONESHOT:
+                    SplunkResultPager.feed(service.oneshot(query), accumulators);
+                    break;
+                case EXPORT:
+                    SplunkResultPager.feed(service.export(query), accumulators);
+                    break;
+                default:
+
+                    long now = System.currentTimeMillis();
+                    Job job;
+
+                    if (checkpoints == null) {
+                        job = service.dispatch(query);
+                    } else {
+                        job = service.dispatch(SplunkCheckpointStore.removeTimeModifiers(query), checkpoints.getSearchStart(query, now), now);
+                    }
+
+                    boolean completed = service.await(job, params, permit);
+
+                    permit.release();
+                    if (completed) {
+                        pager.read(job, params, accumulators);
+                        watermark = now;
+                    }
+            } // end switch
+        } finally {
+            permit.release();
+        }
+        for (SplunkParser.Accumulator accumulator : accumulators) {
+            accumulator.finish();
+        }
+        if (checkpoints != null && watermark >= 0) {
+            checkpoints.stage(query, watermark);
+        }
+    }
+
+    private void queryCached(String params) throws IOException, InterruptedException {
+        SplunkResultCache.Lookup lookup = cache.lookup(query, queryParams, System.currentTimeMillis());
+
+        LOGGER.debug("Obtained {} cached metrics for {}.", lookup.getCached().size(), params);
+        for (Metric metric : lookup.getCached()) {
+            cachedTarget.put(metric);
+        }
+
+        SplunkParser.Accumulator accumulator = cachedTarget.start(queryParams, lookup.record(cachedTarget));
+        SearchGovernor.Permit permit = governor.acquire();
 
         try {
-            resultSet = service.querySplunkForEvents(query, Arrays.toString(queryParams.toArray(new String[queryParams.size()])));
-            results.addAll(parser.parse(resultSet, queryParams));
+            Job job = service.dispatch(SplunkCheckpointStore.removeTimeModifiers(query), lookup.getSearchStart(), lookup.getSearchEnd());
+            boolean completed = service.await(job, params, permit);
+
+            permit.release();
+            if (completed) {
+                pager.read(job, params, Collections.singletonList(accumulator));
+                accumulator.finish();
+                lookup.commit();
+            }
         } finally {
-            if (resultSet != null) {
-                try {
-                    resultSet.close();
-                } catch (IOException ex) {
-                    LOGGER.warn("Failed to close results reader.", ex);
-                    assert (false) : "This should never happen.";
-                }
+            permit.release();
+        }
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /**
+     * A parser and the queue into which its results are placed.
+     *
+     * @param  <T>  The type of the parsed results.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    static class Target<T> implements SplunkParser.Sink<T> {
+
+        private final SplunkParser<T> parser;
+        private final Queue<T> queue;
+
+        /**
+         * Creates a new Target object.
+         *
+         * @param  parser  The parser used to parse the query results. Cannot be null.
+         * @param  queue   The queue in which to place the parsed results. Cannot be null.
+         */
+        Target(SplunkParser<T> parser, Queue<T> queue) {
+            requireArgument((this.parser = parser) != null, "The parser cannot be null.");
+            requireArgument((this.queue = queue) != null, "The queue cannot be null.");
+        }
+
+        SplunkParser.Accumulator start(List<String> queryParams) {
+            return start(queryParams, this);
+        }
+
+        SplunkParser.Accumulator start(List<String> queryParams, SplunkParser.Sink<? super T> sink) {
+            return parser.accumulate(queryParams, sink);
+        }
+
+        /* Queues a result, waiting for space if the queue is a bounded blocking queue. */
+        @Override
+        public void put(T entity) throws InterruptedException {
+            if (queue instanceof BlockingQueue) {
+                ((BlockingQueue<T>) queue).put(entity);
+            } else {
+                queue.add(entity);
             }
         }
-        return results;
     }
 }
 /* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.OrchestraException;
+import com.splunk.Event;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * A substitution pattern compiled into a sequence of literal text, parameter references of the form <tt>$param.N$</tt> and key references of the
+ * form <tt>$key.N$</tt>. Rendering appends each part to a caller supplied buffer without any further pattern matching. References to parameters
+ * or keys which do not exist are rendered literally. Templates are immutable and thread safe.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+final class SubstitutionTemplate {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Pattern REFERENCE = Pattern.compile("\\$(param|key)\\.(\\d+)\\$");
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final String pattern;
+    private final String[] literals;
+    private final boolean[] parameters;
+    private final int[] indices;
+    private final String[] columns;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Compiles a substitution pattern.
+     *
+     * @param  pattern  The pattern to compile. Cannot be null.
+     * @param  keyMap   The mapping of key indices to the event fields from which key values are obtained. Cannot be null.
+     */
+    SubstitutionTemplate(String pattern, Map<String, String> keyMap) {
+        requireArgument((this.pattern = pattern) != null, "The pattern cannot be null.");
+        requireArgument(keyMap != null, "The key map cannot be null.");
+
+        List<String> literalList = new ArrayList<>();
+        List<Boolean> parameterList = new ArrayList<>();
+        List<Integer> indexList = new ArrayList<>();
+        List<String> columnList = new ArrayList<>();
+        Map<String, String> columnsByIndex = new HashMap<>();
+        Matcher matcher = REFERENCE.matcher(pattern);
+        int end = 0;
+
+        for (Map.Entry<String, String> entry : keyMap.entrySet()) {
+            columnsByIndex.put(String.valueOf(Integer.parseInt(entry.getKey())), entry.getValue());
+        }
+
+        while (matcher.find()) {
+            boolean parameter = "param".equals(matcher.group(1));
+            String index = matcher.group(2);
+            String column = null;
+
+            if (!index.equals(String.valueOf(_index(index)))) {
+                continue;
+            }
+            if (!parameter && (column = columnsByIndex.get(index)) == null) {
+                continue;
+            }
+            literalList.add(pattern.substring(end, matcher.start()));
+            parameterList.add(parameter);
+            indexList.add(_index(index));
+            columnList.add(column);
+            end = matcher.end();
+        }
+        literalList.add(pattern.substring(end));
+        literals = literalList.toArray(new String[literalList.size()]);
+        parameters = new boolean[parameterList.size()];
+        indices = new int[indexList.size()];
+        columns = columnList.toArray(new String[columnList.size()]);
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = parameterList.get(i);
+            indices[i] = indexList.get(i);
+        }
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Renders the template for an event.
+     *
+     * @param   event        The event from which key values are obtained. Cannot be null.
+     * @param   queryParams  The query parameters used to obtain the event result set. Cannot be null.
+     * @param   buffer       The buffer to render into. It is cleared before rendering. Cannot be null.
+     *
+     * @return  The rendered text.
+     *
+     * @throws  OrchestraException  If the event has no value for a referenced key.
+     */
+    String render(Event event, List<String> queryParams, StringBuilder buffer) {
+        buffer.setLength(0);
+        for (int i = 0; i < indices.length; i++) {
+            buffer.append(literals[i]);
+            if (parameters[i]) {
+                if (indices[i] < queryParams.size()) {
+                    buffer.append(queryParams.get(indices[i]));
+                } else {
+                    buffer.append("$param.").append(indices[i]).append('$');
+                }
+            } else {
+                String value = event.get(columns[i]);
+
+                if (value == null) {
+                    throw new OrchestraException("The event has no value for key field " + columns[i] + " referenced by " + pattern + ".");
+                }
+                buffer.append(value);
+            }
+        }
+        buffer.append(literals[indices.length]);
+        return buffer.toString();
+    }
+
+    private static int _index(String index) {
+        try {
+            return Integer.parseInt(index);
+        } catch (NumberFormatException ex) {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.OrchestraException;
+import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.TimestampFormat;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * Parses Splunk timestamp fields into UTC epoch milliseconds without intermediate objects. Supports the <tt>MM/dd/yyyy HH:mm:ss</tt> layout and
+ * epoch seconds having an optional fractional part. Recently parsed values are held in a small direct mapped cache since aggregated results
+ * repeat the same bucket timestamp for every series. Instances are thread safe.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+final class TimestampParser {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final int CACHE_SIZE = 256;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final TimestampFormat format;
+    private final Entry[] cache = new Entry[CACHE_SIZE];
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new TimestampParser object.
+     *
+     * @param  format  The format of the timestamp values to parse. Cannot be null.
+     */
+    TimestampParser(TimestampFormat format) {
+        requireArgument(format != null, "The timestamp format cannot be null.");
+        this.format = format;
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Parses a timestamp.
+     *
+     * @param   text  The timestamp text. Cannot be null.
+     *
+     * @return  The timestamp in epoch milliseconds.
+     *
+     * @throws  OrchestraException  If the text does not conform to the configured format.
+     */
+    long parse(String text) {
+        if (text == null) {
+            throw new OrchestraException("The timestamp field is missing.");
+        }
+
+        int slot = text.hashCode() & (CACHE_SIZE - 1);
+        Entry entry = cache[slot];
+
+        if (entry != null && entry.text.equals(text)) {
+            return entry.millis;
+        }
+
+        long millis;
+
+        if (format == TimestampFormat.EPOCH) {
+            millis = _parseEpoch(text);
+        } else {
+            millis = _parseDateTime(text);
+        }
+        cache[slot] = new Entry(text, millis);
+        return millis;
+    }
+
+    private static long _parseEpoch(String text) {
+        int length = text.length();
+        int pos = 0;
+        boolean negative = length > 0 && text.charAt(0) == '-';
+
+        if (negative) {
+            pos++;
+        }
+
+        int start = pos;
+        long seconds = 0;
+
+        while (pos < length && _isDigit(text.charAt(pos))) {
+            if (pos - start >= 15) {
+                throw _invalid(text);
+            }
+            seconds = seconds * 10 + (text.charAt(pos++) - '0');
+        }
+        if (pos == start) {
+            throw _invalid(text);
+        }
+
+        long fraction = 0;
+        long scale = 100;
+
+        if (pos < length && text.charAt(pos) == '.') {
+            pos++;
+            while (pos < length && _isDigit(text.charAt(pos))) {
+                fraction += scale * (text.charAt(pos++) - '0');
+                scale /= 10;
+            }
+        }
+        if (pos != length) {
+            throw _invalid(text);
+        }
+
+        long millis = seconds * MILLIS_PER_SECOND + fraction;
+
+        if (negative) {
+            return -millis;
+        }
+        return millis;
+    }
+
+    private static long _parseDateTime(String text) {
+        int monthEnd = text.indexOf('/');
+        int dayEnd = text.indexOf('/', monthEnd + 1);
+        int yearEnd = text.indexOf(' ', dayEnd + 1);
+        int hourEnd = text.indexOf(':', yearEnd + 1);
+        int minuteEnd = text.indexOf(':', hourEnd + 1);
+
+        if (monthEnd < 0 || dayEnd < 0 || yearEnd < 0 || hourEnd < 0 || minuteEnd < 0) {
+            throw _invalid(text);
+        }
+
+        int month = _field(text, 0, monthEnd, 1, 12);
+        int day = _field(text, monthEnd + 1, dayEnd, 1, 31);
+        int year = _field(text, dayEnd + 1, yearEnd, 1, 9999);
+        int hour = _field(text, yearEnd + 1, hourEnd, 0, 23);
+        int minute = _field(text, hourEnd + 1, minuteEnd, 0, 59);
+        int second = _field(text, minuteEnd + 1, text.length(), 0, 59);
+
+        if (day > _daysInMonth(year, month)) {
+            throw _invalid(text);
+        }
+        return _daysFromCivil(year, month, day) * MILLIS_PER_DAY + ((hour * 60L + minute) * 60L + second) * MILLIS_PER_SECOND;
+    }
+
+    /* Reads a field of one to four digits occupying the given range. */
+    private static int _field(String text, int start, int end, int min, int max) {
+        if (end <= start || end - start > 4) {
+            throw _invalid(text);
+        }
+
+        int value = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+
+            if (!_isDigit(c)) {
+                throw _invalid(text);
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (value < min || value > max) {
+            throw _invalid(text);
+        }
+        return value;
+    }
+
+    /* Days since 1970-01-01 of a proleptic Gregorian date. */
+    private static long _daysFromCivil(int year, int month, int day) {
+        int y = year;
+        int m = month - 3;
+
+        if (month <= 2) {
+            y--;
+            m += 12;
+        }
+
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * m + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    private static int _daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                if (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) {
+                    return 29;
+                }
+                return 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean _isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static OrchestraException _invalid(String text) {
+        return new OrchestraException("Unparseable timestamp: " + text + ".");
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /* Immutable so that entries are safely published to other threads without synchronization. */
+    private static final class Entry {
+
+        private final String text;
+        private final long millis;
+
+        private Entry(String text, long millis) {
+            this.text = text;
+            this.millis = millis;
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * A durable write ahead spool for batches awaiting delivery. Records are appended to memory mapped segment files in a spool directory before they
+ * are submitted, and acknowledged once they have been delivered. A segment is deleted once it has been sealed and all of its records have been
+ * acknowledged. Segments left behind by a previous run, for example because it was killed or timed out, are sealed when the spool is opened and
+ * their unacknowledged records are made available for replay, providing at least once delivery. A record which cannot be delivered can be moved to
+ * the dead letter directory of the spool, so that it is no longer replayed. Each dead letter is kept in a segment file of its own, which can be
+ * moved back into the spool directory to replay it once the cause of the failure has been resolved.
+ *
+ * <p>The spool directory is locked while the spool is open so that it is never shared by concurrent runs. This class is thread safe.</p>
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+public class Spool implements Closeable {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Spool.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String LOCK_FILE = "spool.lock";
+    private static final String DEAD_LETTER_DIRECTORY = "dead-letters";
+    private static final FilenameFilter SEGMENT_FILTER = new FilenameFilter() {
+
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        };
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final File directory;
+    private final int segmentBytes;
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+    private final List<Record> recovered = new ArrayList<>();
+    private SpoolSegment active;
+    private long nextSegmentId;
+    private boolean closed = false;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Opens the spool in the given directory, creating the directory if necessary.
+     *
+     * @param   directory     The spool directory. Cannot be null.
+     * @param   segmentBytes  The size of each segment file in bytes. Must be greater than zero. Records larger than a segment are written to a
+     *                        segment of their own.
+     *
+     * @throws  IOException  If the directory cannot be created or locked, or an existing segment cannot be read.
+     */
+    public Spool(File directory, int segmentBytes) throws IOException {
+        requireArgument((this.directory = directory) != null, "Spool directory cannot be null.");
+        requireArgument((this.segmentBytes = segmentBytes) > 0, "Segment size must be greater than zero.");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the spool directory " + directory);
+        }
+        lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        lock = _tryLock(lockFile);
+        if (lock == null) {
+            lockFile.close();
+            throw new IOException("The spool directory " + directory + " is in use by another process.");
+        }
+        try {
+            _recover();
+        } catch (IOException | RuntimeException ex) {
+            _unlock();
+            throw ex;
+        }
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Returns the records left unacknowledged by previous runs, in the order in which they were appended. Each must be acknowledged once it has been
+     * delivered.
+     *
+     * @return  The recovered records. Will never be null, but may be empty.
+     */
+    public synchronized List<Record> getRecovered() {
+        return Collections.unmodifiableList(new ArrayList<>(recovered));
+    }
+
+    /**
+     * Durably appends a record to the spool.
+     *
+     * @param   kind     An application defined value identifying the type of payload.
+     * @param   payload  The payload. Cannot be null.
+     *
+     * @return  The appended record, which must be acknowledged once it has been delivered.
+     *
+     * @throws  IOException  If the record cannot be written.
+     */
+    public synchronized Record append(byte kind, byte[] payload) throws IOException {
+        requireArgument(payload != null, "Payload cannot be null.");
+        requireArgument(!closed, "The spool is closed.");
+        if (active == null || !active.hasRoom(payload.length)) {
+            _roll(payload.length);
+        }
+        return new Record(this, active, active.append(kind, payload), kind);
+    }
+
+    /**
+     * Durably moves a record which cannot be delivered to the dead letter directory and acknowledges it, so that it is no longer replayed.
+     *
+     * @param   record  The record to move. Cannot be null.
+     *
+     * @throws  IOException  If the dead letter cannot be written, in which case the record remains unacknowledged.
+     */
+    public synchronized void deadLetter(Record record) throws IOException {
+        requireArgument(record != null, "Record cannot be null.");
+        requireArgument(!closed, "The spool is closed.");
+
+        File deadLetters = new File(directory, DEAD_LETTER_DIRECTORY);
+
+        if (!deadLetters.isDirectory() && !deadLetters.mkdirs()) {
+            throw new IOException("Could not create the dead letter directory " + deadLetters);
+        }
+
+        byte[] payload = record.segment.read(record.offset);
+        SpoolSegment segment = SpoolSegment.create(new File(deadLetters, _segmentName(nextSegmentId++)),
+            SpoolSegment.RECORD_HEADER + payload.length);
+
+        segment.append(record.kind, payload);
+        segment.seal();
+        LOGGER.warn("Moved a spooled record to dead letter segment {}.", segment);
+        acknowledge(record);
+    }
+
+    /**
+     * Acknowledges the delivery of a record. The segment containing the record is deleted once it is sealed and all of its records have been
+     * acknowledged. Acknowledging a record after the spool is closed has no effect, and the record is replayed by the next run.
+     *
+     * @param  record  The record to acknowledge. Cannot be null.
+     */
+    public synchronized void acknowledge(Record record) {
+        requireArgument(record != null, "Record cannot be null.");
+        if (!closed && record.segment.acknowledge(record.offset)) {
+            _delete(record.segment);
+        }
+    }
+
+    /**
+     * Closes the spool. The active segment is sealed and deleted if all of its records have been acknowledged. Unacknowledged records are retained
+     * for replay by the next run.
+     *
+     * @throws  IOException  If the spool directory lock cannot be released.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (active != null) {
+            active.seal();
+            if (active.isComplete()) {
+                _delete(active);
+            } else {
+                LOGGER.info("Retained {} unacknowledged records in spool segment {}.", active.getPending(), active);
+            }
+        }
+        _unlock();
+    }
+
+    private void _recover() throws IOException {
+        File[] files = directory.listFiles(SEGMENT_FILTER);
+        File[] deadLetters = new File(directory, DEAD_LETTER_DIRECTORY).listFiles(SEGMENT_FILTER);
+
+        for (File file : deadLetters == null ? new File[0] : deadLetters) {
+            nextSegmentId = Math.max(nextSegmentId, _segmentId(file) + 1);
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            List<Integer> offsets = new ArrayList<>();
+            SpoolSegment segment = SpoolSegment.open(file, offsets);
+
+            nextSegmentId = Math.max(nextSegmentId, _segmentId(file) + 1);
+            for (int offset : offsets) {
+                recovered.add(new Record(this, segment, offset, segment.kind(offset)));
+            }
+            if (segment.isComplete()) {
+                _delete(segment);
+            } else {
+                LOGGER.info("Recovered {} unacknowledged records from spool segment {}.", offsets.size(), segment);
+            }
+        }
+    }
+
+    private void _roll(int length) throws IOException {
+        if (active != null) {
+            active.seal();
+            if (active.isComplete()) {
+                _delete(active);
+            }
+        }
+
+        active = SpoolSegment.create(new File(directory, _segmentName(nextSegmentId++)), Math.max(segmentBytes, SpoolSegment.RECORD_HEADER + length));
+    }
+
+    private static String _segmentName(long id) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    private void _delete(SpoolSegment segment) {
+        if (!segment.delete()) {
+            LOGGER.warn("Could not delete acknowledged spool segment {}.", segment);
+        }
+    }
+
+    /* A lock held by this process is reported as an exception rather than a null lock. */
+    private static FileLock _tryLock(RandomAccessFile file) throws IOException {
+        try {
+            return file.getChannel().tryLock();
+        } catch (OverlappingFileLockException ex) {
+            return null;
+        }
+    }
+
+    private void _unlock() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    private static long _segmentId(File file) {
+        String name = file.getName();
+
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /**
+     * A record in the spool.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    public static final class Record {
+
+        private final Spool spool;
+        private final SpoolSegment segment;
+        private final int offset;
+        private final byte kind;
+
+        private Record(Spool spool, SpoolSegment segment, int offset, byte kind) {
+            this.spool = spool;
+            this.segment = segment;
+            this.offset = offset;
+            this.kind = kind;
+        }
+
+        /**
+         * Returns the application defined kind of the record.
+         *
+         * @return  The record kind.
+         */
+        public byte getKind() {
+            return kind;
+        }
+
+        /**
+         * Reads the payload of the record.
+         *
+         * @return  A copy of the record payload.
+         */
+        public byte[] getPayload() {
+            synchronized (spool) {
+                return segment.read(offset);
+            }
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
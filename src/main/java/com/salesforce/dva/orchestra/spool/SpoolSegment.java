@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.spool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A memory mapped spool segment file. Records are appended sequentially, each consisting of the payload length, a CRC32 checksum of the kind and
+ * payload, the kind, an acknowledgement flag and the payload. The length is written last, so a record which was only partially written when the
+ * process died reads as the end of the segment. The acknowledgement flag is set without forcing the segment to storage, so a record acknowledged
+ * shortly before a crash may be replayed. Instances are not thread safe and are guarded by the owning spool.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+class SpoolSegment {
+
+    //~ Static fields/initializers *******************************************************************************************************************
+
+    /** The number of bytes preceding the payload of each record. */
+    static final int RECORD_HEADER = 10;
+    private static final int KIND_OFFSET = 8;
+    private static final int ACK_OFFSET = 9;
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private int position = 0;
+    private int pending = 0;
+    private boolean sealed = false;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    private SpoolSegment(File file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Creates a new empty segment.
+     *
+     * @param   file      The segment file to create. Must not exist.
+     * @param   capacity  The size of the segment in bytes.
+     *
+     * @return  The new segment.
+     *
+     * @throws  IOException  If the segment cannot be created.
+     */
+    static SpoolSegment create(File file, int capacity) throws IOException {
+        if (!file.createNewFile()) {
+            throw new IOException("Spool segment already exists: " + file);
+        }
+        return new SpoolSegment(file, _map(file, capacity));
+    }
+
+    /**
+     * Opens an existing segment left by a previous run and seals it. The returned offsets identify the intact records in the segment which have
+     * not been acknowledged.
+     *
+     * @param   file     The segment file to open.
+     * @param   offsets  The list to which the offsets of the intact records are added.
+     *
+     * @return  The opened segment.
+     *
+     * @throws  IOException  If the segment cannot be read.
+     */
+    static SpoolSegment open(File file, List<Integer> offsets) throws IOException {
+        SpoolSegment segment = new SpoolSegment(file, _map(file, (int) file.length()));
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+
+        while (position + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+
+            if (length <= 0 || position + RECORD_HEADER + length > buffer.capacity()) {
+                break;
+            }
+
+            byte[] payload = segment.read(position);
+
+            if (_checksum(buffer.get(position + KIND_OFFSET), payload) != buffer.getInt(position + 4)) {
+                break;
+            }
+            if (buffer.get(position + ACK_OFFSET) == 0) {
+                offsets.add(position);
+            }
+            position += RECORD_HEADER + length;
+        }
+        segment.position = position;
+        segment.pending = offsets.size();
+        segment.sealed = true;
+        return segment;
+    }
+
+    /**
+     * Indicates whether the segment has room for a payload of the given length.
+     *
+     * @param   length  The payload length.
+     *
+     * @return  True if the record fits within the segment.
+     */
+    boolean hasRoom(int length) {
+        return !sealed && position + RECORD_HEADER + length <= buffer.capacity();
+    }
+
+    /**
+     * Appends a record and forces it to the storage device.
+     *
+     * @param   kind     The kind of the record.
+     * @param   payload  The payload of the record.
+     *
+     * @return  The offset of the record.
+     */
+    int append(byte kind, byte[] payload) {
+        int offset = position;
+
+        buffer.putInt(offset + 4, _checksum(kind, payload));
+        buffer.put(offset + KIND_OFFSET, kind);
+        buffer.put(offset + ACK_OFFSET, (byte) 0);
+        ByteBuffer view = buffer.duplicate();
+
+        view.position(offset + RECORD_HEADER);
+        view.put(payload);
+        buffer.putInt(offset, payload.length);
+        buffer.force();
+        position += RECORD_HEADER + payload.length;
+        pending++;
+        return offset;
+    }
+
+    /**
+     * Returns the kind of the record at the given offset.
+     *
+     * @param   offset  The record offset.
+     *
+     * @return  The record kind.
+     */
+    byte kind(int offset) {
+        return buffer.get(offset + KIND_OFFSET);
+    }
+
+    /**
+     * Returns a copy of the payload of the record at the given offset.
+     *
+     * @param   offset  The record offset.
+     *
+     * @return  The record payload.
+     */
+    byte[] read(int offset) {
+        byte[] payload = new byte[buffer.getInt(offset)];
+        ByteBuffer view = buffer.duplicate();
+
+        view.position(offset + RECORD_HEADER);
+        view.get(payload);
+        return payload;
+    }
+
+    /**
+     * Records the acknowledgement of a record.
+     *
+     * @param   offset  The record offset.
+     *
+     * @return  True if the segment is sealed and all of its records have been acknowledged.
+     */
+    boolean acknowledge(int offset) {
+        buffer.put(offset + ACK_OFFSET, (byte) 1);
+        pending--;
+        return isComplete();
+    }
+
+    /** Prevents further records from being appended. */
+    void seal() {
+        sealed = true;
+    }
+
+    /**
+     * Indicates whether the segment is sealed and all of its records have been acknowledged.
+     *
+     * @return  True if the segment can be deleted.
+     */
+    boolean isComplete() {
+        return sealed && pending == 0;
+    }
+
+    /**
+     * Returns the number of records not yet acknowledged.
+     *
+     * @return  The number of pending records.
+     */
+    int getPending() {
+        return pending;
+    }
+
+    /**
+     * Deletes the segment file.
+     *
+     * @return  True if the file was deleted.
+     */
+    boolean delete() {
+        return file.delete();
+    }
+
+    @Override
+    public String toString() {
+        return file.getName();
+    }
+
+    private static MappedByteBuffer _map(File file, int capacity) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private static int _checksum(byte kind, byte[] payload) {
+        CRC32 crc = new CRC32();
+
+        crc.update(kind);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
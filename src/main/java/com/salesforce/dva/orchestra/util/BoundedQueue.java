@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.salesforce.dva.orchestra.util.Assert.requireArgument;
+
+/**
+ * A blocking queue bounded both by the number of queued elements and by their total estimated weight, typically an estimate of their size in bytes.
+ * A single element heavier than the weight limit is still accepted when the queue is empty so that it cannot block producers indefinitely.
+ *
+ * <p>In blocking mode, the non-blocking insertion methods <tt>add</tt> and <tt>offer</tt> wait for space to become available instead of failing
+ * immediately. This throttles producers which are not aware that they have been handed a blocking queue. If such a producer is interrupted while
+ * waiting, the element is not inserted, <tt>offer</tt> returns false and the interrupt status of the thread is restored.</p>
+ *
+ * @param   <E>  The type of the queued elements.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+public class BoundedQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    //~ Instance fields ******************************************************************************************************************************
+
+    private final int capacity;
+    private final long maxWeight;
+    private final boolean blocking;
+    private final Weigher<? super E> weigher;
+    private final ArrayDeque<Node<E>> nodes = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private long weight;
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /**
+     * Creates a new BoundedQueue object.
+     *
+     * @param  capacity   The maximum number of queued elements. Must be greater than zero.
+     * @param  maxWeight  The maximum total weight of queued elements. Must be greater than zero.
+     * @param  weigher    The weigher used to estimate the weight of an element. Cannot be null.
+     * @param  blocking   True if <tt>add</tt> and <tt>offer</tt> should wait for space to become available.
+     */
+    public BoundedQueue(int capacity, long maxWeight, Weigher<? super E> weigher, boolean blocking) {
+        requireArgument((this.capacity = capacity) > 0, "The queue capacity must be greater than zero.");
+        requireArgument((this.maxWeight = maxWeight) > 0, "The maximum queue weight must be greater than zero.");
+        requireArgument((this.weigher = weigher) != null, "The weigher cannot be null.");
+        this.blocking = blocking;
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Indicates whether <tt>add</tt> and <tt>offer</tt> wait for space to become available.
+     *
+     * @return  True if the queue is in blocking mode.
+     */
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    /**
+     * Returns the total weight of the queued elements.
+     *
+     * @return  The total weight of the queued elements.
+     */
+    public long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the weight of the element at the head of the queue, as computed when it was inserted.
+     *
+     * @return  The weight of the head element or -1 if the queue is empty.
+     */
+    public long peekWeight() {
+        lock.lock();
+        try {
+            return nodes.isEmpty() ? -1 : nodes.peekFirst().weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        try {
+            return _insert(e, blocking ? -1 : 0);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return _insert(e, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        _insert(e, -1);
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return nodes.isEmpty() ? null : _remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+        try {
+            while (nodes.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return _remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (nodes.isEmpty()) {
+                notEmpty.await();
+            }
+            return _remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return nodes.isEmpty() ? null : nodes.peekFirst().item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - nodes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            for (Iterator<Node<E>> iterator = nodes.iterator(); iterator.hasNext();) {
+                Node<E> node = iterator.next();
+
+                if (node.item.equals(o)) {
+                    iterator.remove();
+                    weight -= node.weight;
+                    notFull.signalAll();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException("Cannot drain into a null collection.");
+        }
+        requireArgument(c != this, "Cannot drain into the queue itself.");
+        lock.lock();
+        try {
+            int result = 0;
+
+            while (result < maxElements && !nodes.isEmpty()) {
+                c.add(_remove());
+                result++;
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued elements. The iterator does not support removal.
+     *
+     * @return  An iterator over the elements queued at the time of invocation.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        lock.lock();
+        try {
+            List<E> snapshot = new ArrayList<>(nodes.size());
+
+            for (Node<E> node : nodes) {
+                snapshot.add(node.item);
+            }
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Inserts an element waiting at most the specified number of nanoseconds for space.  A negative wait time indicates an indefinite wait. */
+    private boolean _insert(E e, long nanos) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException("Cannot queue a null element.");
+        }
+
+        long elementWeight = weigher.weigh(e);
+
+        lock.lockInterruptibly();
+        try {
+            while (!_hasRoom(elementWeight)) {
+                if (nanos == 0) {
+                    return false;
+                } else if (nanos < 0) {
+                    notFull.await();
+                } else {
+                    nanos = Math.max(0, notFull.awaitNanos(nanos));
+                }
+            }
+            nodes.addLast(new Node<>(e, elementWeight));
+            weight += elementWeight;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean _hasRoom(long elementWeight) {
+        return nodes.isEmpty() || (nodes.size() < capacity && weight + elementWeight <= maxWeight);
+    }
+
+    private E _remove() {
+        Node<E> node = nodes.pollFirst();
+
+        weight -= node.weight;
+        notFull.signalAll();
+        return node.item;
+    }
+
+    //~ Inner Interfaces *****************************************************************************************************************************
+
+    /**
+     * Estimates the weight of a queued element.
+     *
+     * @param   <E>  The type of element to weigh.
+     *
+     * @author  Tom Valine (tvaline@salesforce.com)
+     */
+    public interface Weigher<E> {
+
+        /**
+         * Returns the weight of an element.
+         *
+         * @param   element  The element to weigh. Will never be null.
+         *
+         * @return  The weight of the element. Must not be negative.
+         */
+        long weigh(E element);
+    }
+
+    //~ Inner Classes ********************************************************************************************************************************
+
+    /* A queued element together with the weight recorded when it was inserted. */
+    private static final class Node<E> {
+
+        private final E item;
+        private final long weight;
+
+        private Node(E item, long weight) {
+            this.item = item;
+            this.weight = weight;
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
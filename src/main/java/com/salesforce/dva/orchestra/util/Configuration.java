@@ -117,7 +117,45 @@ public class Configuration {
         /** The username to authenticate to the web services with. No default. */
         ARGUSWS_USERNAME("argusws.username", ""),
         /** The password to authenticate to the web services with. No default. */
-        ARGUSWS_PASSWORD("argusws.password", "");
+        ARGUSWS_PASSWORD("argusws.password", ""),
+        /** The maximum number of collection batches concurrently submitted to the web services. Defaults to '4'. */
+        ARGUSWS_MAX_INFLIGHT("argusws.maxinflight", "4"),
+        /** Indicates that collection payloads are gzip compressed before being submitted to the web services. Defaults to 'false'. */
+        ARGUSWS_COMPRESSION("argusws.compression", "false"),
+        /** The gzip compression level from 1 (fastest) to 9 (smallest) used for collection payloads. Defaults to '6'. */
+        ARGUSWS_COMPRESSION_LEVEL("argusws.compression.level", "6"),
+        /** The estimated payload size in bytes below which collection payloads are sent uncompressed. Defaults to '4096'. */
+        ARGUSWS_COMPRESSION_THRESHOLD("argusws.compression.threshold", "4096"),
+        /** The maximum number of attempts made to write a batch when the web services fail transiently. Defaults to '4'. */
+        ARGUSWS_RETRY_ATTEMPTS("argusws.retry.attempts", "4"),
+        /** The delay in milliseconds before the first retry of a failed write, doubling with each further attempt. Defaults to '500'. */
+        ARGUSWS_RETRY_DELAY("argusws.retry.delay", "500"),
+        /** The maximum delay in milliseconds between attempts to write a batch. Defaults to '30000'. */
+        ARGUSWS_RETRY_MAX_DELAY("argusws.retry.maxdelay", "30000"),
+        /** The total number of retries and batch resubmissions permitted per collector run. Set to zero to disable retries. Defaults to '200'. */
+        ARGUSWS_RETRY_BUDGET("argusws.retry.budget", "200"),
+        /** The maximum number of entities buffered between the reader and the collector for each entity type. Defaults to '10000'. */
+        COLLECTOR_QUEUE_CAPACITY("collector.queue.capacity", "10000"),
+        /** The maximum estimated size in bytes of the entities buffered for each entity type. Defaults to '67108864'. */
+        COLLECTOR_QUEUE_BYTES("collector.queue.bytes", "67108864"),
+        /** Indicates that readers adding to a full queue are blocked until space is available rather than failing. Defaults to 'true'. */
+        COLLECTOR_QUEUE_BLOCKING("collector.queue.blocking", "true"),
+        /** The minimum target size in estimated bytes of a batch submitted to the web services. Defaults to '65536'. */
+        COLLECTOR_BATCH_MIN_BYTES("collector.batch.minbytes", "65536"),
+        /** The maximum target size in estimated bytes of a batch submitted to the web services. Defaults to '4194304'. */
+        COLLECTOR_BATCH_MAX_BYTES("collector.batch.maxbytes", "4194304"),
+        /** The maximum number of datapoints in a batch submitted to the web services. Defaults to '100000'. */
+        COLLECTOR_BATCH_MAX_DATAPOINTS("collector.batch.maxdatapoints", "100000"),
+        /** The batch submission latency in milliseconds above which the target batch size is decreased. Defaults to '5000'. */
+        COLLECTOR_BATCH_TARGET_LATENCY("collector.batch.targetlatency", "5000"),
+        /** Indicates that metrics of the same series within a batch are merged before submission. Defaults to 'true'. */
+        COLLECTOR_COALESCE("collector.coalesce", "true"),
+        /** The rule resolving a timestamp duplicated across merged metrics. One of last, first, min, max or sum. Defaults to 'last'. */
+        COLLECTOR_COALESCE_CONFLICT("collector.coalesce.conflict", "last"),
+        /** The directory in which batches are spooled until Argus accepts them. Spooling is disabled if not set. No default. */
+        COLLECTOR_SPOOL_DIR("collector.spool.dir", ""),
+        /** The size in bytes of each spool segment file. Defaults to '67108864'. */
+        COLLECTOR_SPOOL_SEGMENT_BYTES("collector.spool.segmentbytes", "67108864");
 
         private String keyName;
         private String defaultValue;
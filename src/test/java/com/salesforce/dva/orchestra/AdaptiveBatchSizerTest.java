@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBatchSizerTest {
+
+    @Test
+    public void testAdditiveIncreaseUpToMaximum() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer("test", 100, 500, 10, 1000);
+
+        assertEquals(125, sizer.getTargetBytes());
+        for (int i = 0; i < 3; i++) {
+            sizer.onSuccess(sizer.onSubmit(), 10);
+        }
+        assertEquals(425, sizer.getTargetBytes());
+        for (int i = 0; i < 3; i++) {
+            sizer.onSuccess(sizer.onSubmit(), 10);
+        }
+        assertEquals(500, sizer.getTargetBytes());
+    }
+
+    @Test
+    public void testMultiplicativeDecreaseDownToMinimum() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer("test", 100, 1600, 10, 1000);
+
+        assertEquals(400, sizer.getTargetBytes());
+        sizer.onSuccess(sizer.onSubmit(), 2000);
+        assertEquals(200, sizer.getTargetBytes());
+        sizer.onFailure(sizer.onSubmit());
+        assertEquals(100, sizer.getTargetBytes());
+        sizer.onFailure(sizer.onSubmit());
+        assertEquals(100, sizer.getTargetBytes());
+    }
+
+    @Test
+    public void testInFlightBatchesDoNotDecreaseTwice() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer("test", 100, 1600, 10, 1000);
+        long first = sizer.onSubmit();
+        long second = sizer.onSubmit();
+        long third = sizer.onSubmit();
+
+        sizer.onSuccess(first, 2000);
+        assertEquals(200, sizer.getTargetBytes());
+        sizer.onFailure(second);
+        sizer.onSuccess(third, 10);
+        assertEquals(200, sizer.getTargetBytes());
+        sizer.onSuccess(sizer.onSubmit(), 2000);
+        assertEquals(100, sizer.getTargetBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaximumBelowMinimum() {
+        new AdaptiveBatchSizer("test", 100, 99, 10, 1000);
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
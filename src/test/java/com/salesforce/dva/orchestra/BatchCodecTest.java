@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import com.salesforce.dva.orchestra.argus.entity.Annotation;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BatchCodecTest {
+
+    @Test
+    public void testMetricRoundTrip() {
+        Metric metric = new Metric("scope", "metric");
+        Map<Long, String> datapoints = new HashMap<>();
+
+        datapoints.put(1000L, "1.5");
+        datapoints.put(2000L, "2.5");
+        metric.setDatapoints(datapoints);
+        metric.setTag("host", "server1");
+        metric.setUnits("ms");
+
+        List<Metric> decoded = BatchCodec.decodeMetrics(BatchCodec.encode(Arrays.asList(metric)));
+
+        assertEquals(1, decoded.size());
+        assertEquals(metric, decoded.get(0));
+        assertEquals(metric.getDatapoints(), decoded.get(0).getDatapoints());
+        assertEquals(metric.getTags(), decoded.get(0).getTags());
+        assertEquals("ms", decoded.get(0).getUnits());
+    }
+
+    @Test
+    public void testAnnotationRoundTrip() {
+        Annotation annotation = new Annotation("splunk", "id", "event", "scope", "metric", 1000L);
+        Map<String, String> fields = new HashMap<>();
+
+        fields.put("user", "someone");
+        annotation.setFields(fields);
+
+        List<Annotation> decoded = BatchCodec.decodeAnnotations(BatchCodec.encode(Arrays.asList(annotation)));
+
+        assertEquals(1, decoded.size());
+        assertEquals(annotation, decoded.get(0));
+        assertEquals(fields, decoded.get(0).getFields());
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import com.salesforce.dva.orchestra.argus.ArgusService;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.salesforce.dva.orchestra.spool.Spool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchSubmitterTest {
+
+    private File directory;
+    private HttpServer server;
+    private ArgusService service;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("spool", "");
+        assertTrue(directory.delete());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    InputStream in = exchange.getRequestBody();
+
+                    while (in.read(new byte[8192]) != -1) { }
+                    exchange.sendResponseHeaders("POST".equals(exchange.getRequestMethod()) ? 500 : 200, -1);
+                    exchange.close();
+                }
+            });
+        server.start();
+        service = ArgusService.getInstance("http://127.0.0.1:" + server.getAddress().getPort(), 10, false);
+    }
+
+    @After
+    public void tearDown() {
+        service.dispose();
+        server.stop(0);
+        _delete(directory);
+    }
+
+    private static void _delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (File child : files) {
+                _delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testFailedReplayIsMovedToDeadLetters() throws IOException, InterruptedException {
+        try(Spool spool = new Spool(directory, 1024)) {
+            spool.append((byte) 1, BatchCodec.encode(Arrays.asList(new Metric("scope", "metric"))));
+            spool.append((byte) 9, new byte[] { 1, 2, 3 });
+        }
+        try(Spool spool = new Spool(directory, 1024)) {
+            List<Spool.Record> recovered = spool.getRecovered();
+            BatchSubmitter submitter = new BatchSubmitter(service, 2, new AdaptiveBatchSizer("metric", 100, 1000, 10, 1000),
+                new AdaptiveBatchSizer("annotation", 100, 1000, 10, 1000), spool);
+
+            assertEquals(2, recovered.size());
+            try {
+                for (Spool.Record record : recovered) {
+                    submitter.replay(record);
+                }
+                assertTrue(submitter.awaitCompletion(System.currentTimeMillis() + 10000));
+                submitter.submitMetrics(Arrays.asList(new Metric("scope", "current")));
+                try {
+                    submitter.awaitCompletion(System.currentTimeMillis() + 10000);
+                    fail("A failed batch of the current run must fail the run.");
+                } catch (OrchestraException ex) {
+                    assertEquals(0, submitter.getRejectedCount());
+                }
+            } finally {
+                submitter.close();
+            }
+        }
+        try(Spool spool = new Spool(directory, 1024)) {
+            assertEquals(1, spool.getRecovered().size());
+        }
+        assertEquals(2, new File(directory, "dead-letters").listFiles().length);
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import com.salesforce.dva.orchestra.argus.ArgusService;
+import com.salesforce.dva.orchestra.argus.entity.Annotation;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.salesforce.dva.orchestra.domain.DomainReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+public class CollectorCommitTest {
+
+    private HttpServer server;
+    private ArgusService service;
+    private BatchSubmitter submitter;
+    private RecordingReader reader;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new RejectingHandler());
+        server.start();
+        service = ArgusService.getInstance("http://127.0.0.1:" + server.getAddress().getPort(), 10, false);
+        service.enableRetries(3, 1, 10, 10);
+        submitter = new BatchSubmitter(service, 2, new AdaptiveBatchSizer("metric", 100, 1000, 10, 1000),
+            new AdaptiveBatchSizer("annotation", 100, 1000, 10, 1000));
+        reader = new RecordingReader();
+    }
+
+    @After
+    public void tearDown() {
+        submitter.close();
+        service.dispose();
+        server.stop(0);
+    }
+
+    @Test
+    public void testCommitAfterDelivery() throws InterruptedException {
+        submitter.submitMetrics(_createBatch(4, false));
+        assertTrue(submitter.awaitCompletion(System.currentTimeMillis() + 10000));
+        Collector.commit(reader, submitter, true);
+        assertEquals(0, submitter.getRejectedCount());
+        assertEquals(1, reader.commits);
+    }
+
+    @Test
+    public void testNoCommitAfterRejectedEntityIsDropped() throws InterruptedException {
+        submitter.submitMetrics(_createBatch(4, true));
+        assertTrue(submitter.awaitCompletion(System.currentTimeMillis() + 10000));
+        assertEquals(1, submitter.getRejectedCount());
+        try {
+            Collector.commit(reader, submitter, true);
+            fail("A run which dropped a rejected entity must fail.");
+        } catch (OrchestraException ex) {
+            assertEquals(0, reader.commits);
+        }
+    }
+
+    @Test
+    public void testNoCommitWithoutDelivery() {
+        Collector.commit(reader, submitter, false);
+        assertEquals(0, reader.commits);
+    }
+
+    private List<Metric> _createBatch(int size, boolean includeBad) {
+        List<Metric> result = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            result.add(new Metric("scope", includeBad && i == 1 ? "bad" : "good"));
+        }
+        return result;
+    }
+
+    /* Rejects any payload containing a metric named bad with a 400 and accepts everything else. */
+    private static class RejectingHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            exchange.sendResponseHeaders(body.toString("UTF-8").contains("\"bad\"") ? 400 : 200, -1);
+            exchange.close();
+        }
+    }
+
+    private static class RecordingReader implements DomainReader {
+
+        int commits;
+
+        @Override
+        public boolean isMetricCollectionDone() {
+            return true;
+        }
+
+        @Override
+        public boolean isAnnotationCollectionDone() {
+            return true;
+        }
+
+        @Override
+        public void invokeCollection(Queue<Metric> metricQueue, Queue<Annotation> annotationQueue) { }
+
+        @Override
+        public void commit() {
+            commits++;
+        }
+
+        @Override
+        public String getDatasource() {
+            return "recording";
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra;
+
+import com.salesforce.dva.orchestra.MetricCoalescer.Conflict;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricCoalescerTest {
+
+    private static Metric _metric(String name, String host, long... timestampsAndValues) {
+        Metric metric = new Metric("scope", name);
+
+        metric.setTag("host", host);
+        for (int i = 0; i < timestampsAndValues.length; i += 2) {
+            metric.addDatapoint(timestampsAndValues[i], String.valueOf(timestampsAndValues[i + 1]));
+        }
+        return metric;
+    }
+
+    @Test
+    public void testCoalesceMergesSameSeries() {
+        Metric a1 = _metric("m", "a", 1000, 1);
+        Metric b = _metric("m", "b", 1000, 5);
+        Metric a2 = _metric("m", "a", 2000, 2);
+        Metric other = _metric("n", "a", 1000, 3);
+        List<Metric> result = new MetricCoalescer(Conflict.LAST).coalesce(Arrays.asList(a1, b, a2, other));
+
+        assertEquals(Arrays.asList(a1, b, other), result);
+        assertSame(a1, result.get(0));
+        assertEquals(2, a1.getDatapoints().size());
+        assertEquals("2", a1.getDatapoints().get(2000L));
+    }
+
+    @Test
+    public void testCoalesceKeepsDifferingUnitsApart() {
+        Metric a1 = _metric("m", "a", 1000, 1);
+        Metric a2 = _metric("m", "a", 2000, 2);
+
+        a2.setUnits("ms");
+        assertEquals(2, new MetricCoalescer(Conflict.LAST).coalesce(Arrays.asList(a1, a2)).size());
+        assertEquals(1, a1.getDatapoints().size());
+    }
+
+    @Test
+    public void testConflictRules() {
+        assertEquals("4", _resolve(Conflict.LAST));
+        assertEquals("3", _resolve(Conflict.FIRST));
+        assertEquals("3", _resolve(Conflict.MIN));
+        assertEquals("4", _resolve(Conflict.MAX));
+        assertEquals("7", _resolve(Conflict.SUM));
+        assertEquals("1.5", Conflict.SUM.resolve("1", "0.5"));
+        assertEquals("x", Conflict.MIN.resolve("1", "x"));
+    }
+
+    @Test
+    public void testFromName() {
+        assertEquals(Conflict.SUM, Conflict.fromName(" Sum "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromUnsupportedName() {
+        Conflict.fromName("avg");
+    }
+
+    private static String _resolve(Conflict conflict) {
+        Metric first = _metric("m", "a", 1000, 3);
+
+        new MetricCoalescer(conflict).coalesce(Arrays.asList(first, _metric("m", "a", 1000, 4)));
+        return first.getDatapoints().get(1000L);
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
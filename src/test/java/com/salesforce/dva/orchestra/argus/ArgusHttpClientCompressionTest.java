@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus;
+
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/** Submits Splunk shaped metric batches to a local stub server with and without compression and compares the bytes on the wire. */
+public class ArgusHttpClientCompressionTest {
+
+    private StubServer stub;
+    private HttpServer server;
+    private ArgusHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        stub = new StubServer();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", stub);
+        server.start();
+        client = new ArgusHttpClient("http://127.0.0.1:" + server.getAddress().getPort(), 10, 10000, 10000, false);
+    }
+
+    @After
+    public void tearDown() {
+        client.dispose();
+        server.stop(0);
+    }
+
+    @Test
+    public void testCompressionReducesWireBytes() {
+        List<Metric> batch = _createBatch(1000, 6);
+
+        client.putMetricData(batch);
+
+        String plain = stub.body;
+        long plainBytes = stub.wireBytes;
+
+        assertNull(stub.encoding);
+        client.setCompression(6, 0);
+        stub.wireBytes = 0;
+        client.putMetricData(batch);
+        assertEquals("gzip", stub.encoding);
+        assertEquals(plain, stub.body);
+        assertTrue(stub.wireBytes < plainBytes);
+    }
+
+    @Test
+    public void testSmallPayloadsAreNotCompressed() {
+        client.setCompression(6, 65536);
+        client.putMetricData(_createBatch(2, 1));
+        assertNull(stub.encoding);
+        client.putMetricData(_createBatch(1000, 6));
+        assertEquals("gzip", stub.encoding);
+    }
+
+    /* Mirrors the output of the Splunk reader: per server and index metrics bucketed in ten minute intervals. */
+    private List<Metric> _createBatch(int metrics, int datapoints) {
+        List<Metric> result = new ArrayList<>(metrics);
+        long start = 1460000000000L;
+
+        for (int i = 0; i < metrics; i++) {
+            Metric metric = new Metric("splunk.index._audit", i % 2 == 0 ? "querycount" : "linecount");
+
+            metric.setTag("splunk_server", "splunk-idx-" + (i / 2) + ".mycompany.com");
+            metric.setTag("source", "splunk");
+            Map<Long, String> values = new HashMap<>();
+
+            for (int j = 0; j < datapoints; j++) {
+                values.put(start + j * 600000L, String.valueOf((i * 37 + j * 11) % 5000));
+            }
+            metric.setDatapoints(values);
+            result.add(metric);
+        }
+        return result;
+    }
+
+    private static class StubServer implements HttpHandler {
+
+        volatile long wireBytes;
+        volatile String encoding;
+        volatile String body;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] raw = _read(exchange.getRequestBody());
+
+            encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            wireBytes += raw.length;
+            if ("gzip".equals(encoding)) {
+                body = new String(_read(new GZIPInputStream(new ByteArrayInputStream(raw))), "UTF-8");
+            } else {
+                body = new String(raw, "UTF-8");
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        }
+
+        private byte[] _read(InputStream in) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
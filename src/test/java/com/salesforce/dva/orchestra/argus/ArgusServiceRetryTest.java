@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus;
+
+import com.salesforce.dva.orchestra.OrchestraException;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ArgusServiceRetryTest {
+
+    private StubServer stub;
+    private HttpServer server;
+    private ArgusService service;
+
+    @Before
+    public void setUp() throws IOException {
+        stub = new StubServer();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", stub);
+        server.start();
+        service = ArgusService.getInstance("http://127.0.0.1:" + server.getAddress().getPort(), 10, false);
+    }
+
+    @After
+    public void tearDown() {
+        service.dispose();
+        server.stop(0);
+    }
+
+    @Test
+    public void testTransientFailureIsRetried() {
+        stub.transientFailures.set(2);
+        service.enableRetries(3, 1, 10, 10);
+        service.put(_createBatch(4, -1));
+        assertEquals(3, stub.requests.get());
+        assertEquals(4, stub.accepted.get());
+        assertEquals(8, service.getRemainingRetryBudget());
+    }
+
+    @Test
+    public void testRejectedEntityIsIsolated() {
+        service.enableRetries(3, 1, 10, 10);
+
+        List<Metric> batch = _createBatch(4, 2);
+        List<Metric> rejected = service.put(batch);
+
+        assertEquals(1, rejected.size());
+        assertSame(batch.get(2), rejected.get(0));
+        assertEquals(3, stub.accepted.get());
+        assertEquals(6, service.getRemainingRetryBudget());
+    }
+
+    @Test(expected = OrchestraException.class)
+    public void testRetryBudgetExhausted() {
+        stub.transientFailures.set(Integer.MAX_VALUE);
+        service.enableRetries(5, 1, 10, 2);
+        service.put(_createBatch(1, -1));
+    }
+
+    @Test(expected = ArgusHttpException.class)
+    public void testRetriesDisabledByDefault() {
+        stub.transientFailures.set(1);
+        service.put(_createBatch(1, -1));
+    }
+
+    private List<Metric> _createBatch(int size, int badIndex) {
+        List<Metric> result = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            result.add(new Metric("scope", i == badIndex ? "bad" : "good"));
+        }
+        return result;
+    }
+
+    /* Fails the configured number of requests with a 503 and rejects any payload containing a metric named bad with a 400. */
+    private static class StubServer implements HttpHandler {
+
+        final AtomicInteger transientFailures = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger accepted = new AtomicInteger();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String body = _read(exchange.getRequestBody());
+            int status = 200;
+
+            if ("POST".equals(exchange.getRequestMethod())) {
+                requests.incrementAndGet();
+                if (transientFailures.getAndDecrement() > 0) {
+                    status = 503;
+                } else if (body.contains("\"bad\"")) {
+                    status = 400;
+                } else {
+                    accepted.addAndGet(body.split("\"good\"", -1).length - 1);
+                }
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        }
+
+        private String _read(InputStream in) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JsonEntityTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testWriteToMatchesStringSerialization() throws IOException {
+        List<Metric> metrics = Arrays.asList(_createMetric("a"), _createMetric("b"));
+        JsonEntity entity = new JsonEntity(MAPPER, metrics);
+        String expected = MAPPER.writeValueAsString(metrics);
+
+        assertEquals(expected, _write(entity));
+        assertEquals(expected, _write(entity));
+        assertEquals(expected, EntityUtils.toString(entity));
+        assertTrue(entity.isRepeatable());
+        assertTrue(entity.isChunked());
+        assertEquals(-1, entity.getContentLength());
+    }
+
+    @Test
+    public void testWriteToLeavesStreamOpen() throws IOException {
+        JsonEntity entity = new JsonEntity(MAPPER, Arrays.asList("x"));
+        final boolean[] closed = new boolean[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+
+        entity.writeTo(out);
+        assertFalse(closed[0]);
+        assertEquals("[\"x\"]", out.toString("UTF-8"));
+    }
+
+    private String _write(JsonEntity entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        entity.writeTo(out);
+        return out.toString("UTF-8");
+    }
+
+    private Metric _createMetric(String name) {
+        Metric metric = new Metric("scope", name);
+        Map<Long, String> datapoints = new HashMap<>();
+
+        datapoints.put(1000L, "1.0");
+        metric.setDatapoints(datapoints);
+        return metric;
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
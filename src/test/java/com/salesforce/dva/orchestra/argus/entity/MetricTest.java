@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus.entity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class MetricTest {
+
+    private static final List<String> VALUES = Arrays.asList("1", "1.0", "2.5", "-7", "-0", "1e3", "NaN", "abc", "", "123456789012345678");
+
+    private static Map<Long, String> _datapoints() {
+        Map<Long, String> datapoints = new TreeMap<>();
+
+        for (int i = 0; i < VALUES.size(); i++) {
+            datapoints.put(1000L * (VALUES.size() - i), VALUES.get(i));
+        }
+        return datapoints;
+    }
+
+    @Test
+    public void testValuesArePreservedExactly() {
+        Metric metric = new Metric("scope", "metric");
+
+        metric.setDatapoints(new HashMap<>(_datapoints()));
+        assertEquals(_datapoints(), metric.getDatapoints());
+        assertEquals(new ArrayList<>(_datapoints().keySet()), new ArrayList<>(metric.getDatapoints().keySet()));
+        assertEquals("2.5", metric.getDatapoints().get(8000L));
+        assertNull(metric.getDatapoints().get(500L));
+    }
+
+    @Test
+    public void testAddDatapoint() {
+        Metric metric = new Metric("scope", "metric");
+
+        metric.addDatapoint(3000L, "3");
+        metric.addDatapoint(1000L, "1");
+        metric.addDatapoint(2000L, "x");
+        metric.addDatapoint(3000L, "3.5");
+        metric.addDatapoint(2000L, "2");
+        assertEquals(Arrays.asList(1000L, 2000L, 3000L), new ArrayList<>(metric.getDatapoints().keySet()));
+        assertEquals(Arrays.asList("1", "2", "3.5"), new ArrayList<>(metric.getDatapoints().values()));
+    }
+
+    @Test
+    public void testAddNumericDatapoint() {
+        Metric metric = new Metric("scope", "metric");
+
+        metric.addDatapoint(2000L, "x");
+        metric.addDatapoint(1000L, 1.5);
+        metric.addDatapoint(2000L, 2.0);
+        assertEquals(Arrays.asList("1.5", "2"), new ArrayList<>(metric.getDatapoints().values()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddNonFiniteDatapoint() {
+        new Metric("scope", "metric").addDatapoint(1000L, Double.NaN);
+    }
+
+    @Test
+    public void testSetDatapointsReplacesExisting() {
+        Metric metric = new Metric("scope", "metric");
+
+        metric.addDatapoint(1000L, "1");
+        metric.setDatapoints(metric.getDatapoints());
+        assertEquals(1, metric.getDatapointCount());
+        metric.setDatapoints(null);
+        assertTrue(metric.getDatapoints().isEmpty());
+        assertEquals(0, metric.getDatapointCount());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDatapointsAreUnmodifiable() {
+        Metric metric = new Metric("scope", "metric");
+
+        metric.addDatapoint(1000L, "1");
+        metric.getDatapoints().clear();
+    }
+
+    @Test
+    public void testTagsView() {
+        Metric metric = new Metric("scope", "metric");
+        Map<String, String> tags = new HashMap<>();
+
+        tags.put("host", "a");
+        metric.setTags(tags);
+        tags.put("host", "b");
+        assertEquals("a", metric.getTag("host"));
+        assertSame(metric.getTags(), metric.getTags());
+        metric.setTag("dc", "was");
+        assertEquals(2, metric.getTags().size());
+        metric.setTags(metric.getTags());
+        assertEquals(2, metric.getTags().size());
+        assertNull(metric.getTag("metric"));
+    }
+
+    @Test
+    public void testReservedTagLeavesTagsUnchanged() {
+        Metric metric = new Metric("scope", "metric");
+        Map<String, String> tags = new HashMap<>();
+
+        metric.setTag("host", "a");
+        tags.put("dc", "was");
+        tags.put("units", "ms");
+        try {
+            metric.setTags(tags);
+            fail("Expected a reserved tag to be rejected.");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("a", metric.getTag("host"));
+            assertEquals(1, metric.getTags().size());
+        }
+        assertTrue(TSDBEntity.ReservedField.isReservedField("displayName"));
+        assertTrue(TSDBEntity.ReservedField.isReservedField(null));
+        assertFalse(TSDBEntity.ReservedField.isReservedField("host"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testTagsAreUnmodifiable() {
+        new Metric("scope", "metric").getTags().put("host", "a");
+    }
+
+    @Test
+    public void testJsonMatchesMapSerialization() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Metric metric = new Metric("scope", "metric");
+
+        metric.setDatapoints(_datapoints());
+        assertEquals(mapper.writeValueAsString(_datapoints()), mapper.readTree(mapper.writeValueAsString(metric)).get("datapoints").toString());
+        assertNull(mapper.readTree(mapper.writeValueAsString(metric)).get("datapointCount"));
+    }
+
+    @Test
+    public void testJavaSerialization() throws Exception {
+        Metric metric = new Metric("scope", "metric");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        metric.setDatapoints(_datapoints());
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(metric);
+        }
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(_datapoints(), ((Metric) in.readObject()).getDatapoints());
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
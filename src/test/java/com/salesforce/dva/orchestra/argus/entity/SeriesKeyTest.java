@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.argus.entity;
+
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class SeriesKeyTest {
+
+    private static Map<String, String> _tags(String... pairs) {
+        Map<String, String> tags = new HashMap<>();
+
+        for (int i = 0; i < pairs.length; i += 2) {
+            tags.put(pairs[i], pairs[i + 1]);
+        }
+        return tags;
+    }
+
+    @Test
+    public void testEqualityIgnoresTagOrderAndStringIdentity() {
+        SeriesKey key = SeriesKey.of("scope", "metric", _tags("b", "2", "a", "1"));
+        SeriesKey other = SeriesKey.of(new String("scope"), new String("metric"), new TreeMap<>(_tags(new String("a"), new String("1"), "b", "2")));
+
+        assertEquals(key, other);
+        assertEquals(key.hashCode(), other.hashCode());
+        assertEquals("a", key.getTagName(0));
+        assertEquals("2", key.getTagValue(1));
+        assertEquals("scope:metric{a=1,b=2}", key.toString());
+    }
+
+    @Test
+    public void testInequality() {
+        SeriesKey key = SeriesKey.of("scope", "metric", _tags("a", "1"));
+
+        assertFalse(key.equals(SeriesKey.of("scope", "metric", _tags("a", "2"))));
+        assertFalse(key.equals(SeriesKey.of("scope", "metric", _tags("a", "1", "b", "1"))));
+        assertFalse(key.equals(SeriesKey.of("scope", "other", _tags("a", "1"))));
+        assertFalse(key.equals(SeriesKey.of("other", "metric", _tags("a", "1"))));
+        assertFalse(key.equals(SeriesKey.of("scope", "metric", null)));
+    }
+
+    @Test
+    public void testWithMetric() {
+        SeriesKey key = SeriesKey.of("scope", "metric", _tags("a", "1"));
+
+        assertEquals(SeriesKey.of("scope", "other", _tags("a", "1")), key.withMetric("other"));
+        assertEquals(key, key.withMetric("other").withMetric(new String("metric")));
+    }
+
+    @Test
+    public void testOfEntity() {
+        Metric metric = new Metric("scope", "metric");
+
+        metric.setTags(_tags("a", "1"));
+        assertEquals(SeriesKey.of("scope", "metric", _tags("a", "1")), SeriesKey.of(metric));
+        assertEquals(0, SeriesKey.of(new Metric("scope", "metric")).getTagCount());
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
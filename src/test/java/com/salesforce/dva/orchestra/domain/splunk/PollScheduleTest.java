@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PollScheduleTest {
+
+    @Test
+    public void testDelayBacksOffToMaximum() {
+        PollSchedule schedule = new PollSchedule(500, 2, 30000);
+
+        assertEquals(500, schedule.getDelay(0));
+        assertEquals(1000, schedule.getDelay(1));
+        assertEquals(16000, schedule.getDelay(5));
+        assertEquals(30000, schedule.getDelay(6));
+        assertEquals(30000, schedule.getDelay(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testFixedSchedule() {
+        PollSchedule schedule = new PollSchedule(30000, 1, 30000);
+
+        assertEquals(30000, schedule.getDelay(0));
+        assertEquals(30000, schedule.getDelay(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaximumBelowInitialDelay() {
+        new PollSchedule(1000, 2, 500);
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
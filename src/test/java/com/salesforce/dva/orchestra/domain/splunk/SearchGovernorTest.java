@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import org.junit.Test;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SearchGovernorTest {
+
+    @Test
+    public void testQueueingLowersLimit() throws InterruptedException {
+        SearchGovernor governor = new SearchGovernor(3);
+        SearchGovernor.Permit first = governor.acquire();
+        SearchGovernor.Permit second = governor.acquire();
+
+        first.queued();
+        first.queued();
+        assertEquals(2, governor.getLimit());
+        second.queued();
+        assertEquals(1, governor.getLimit());
+        first.release();
+        second.release();
+        assertEquals(1, governor.getLimit());
+    }
+
+    @Test
+    public void testUnqueuedSearchesRaiseLimitToMaximum() throws InterruptedException {
+        SearchGovernor governor = new SearchGovernor(2);
+        SearchGovernor.Permit permit = governor.acquire();
+
+        permit.queued();
+        permit.release();
+        assertEquals(1, governor.getLimit());
+        governor.acquire().release();
+        assertEquals(2, governor.getLimit());
+        governor.acquire().release();
+        assertEquals(2, governor.getLimit());
+    }
+
+    @Test
+    public void testQueuedOnFirstPollOnlyKeepsLimit() throws InterruptedException {
+        SearchGovernor governor = new SearchGovernor(2);
+        SearchGovernor.Permit permit = governor.acquire();
+
+        permit.polled(true);
+        permit.polled(false);
+        permit.release();
+        assertEquals(2, governor.getLimit());
+    }
+
+    @Test
+    public void testQueuedAfterFirstPollLowersLimit() throws InterruptedException {
+        SearchGovernor governor = new SearchGovernor(2);
+        SearchGovernor.Permit permit = governor.acquire();
+
+        permit.polled(true);
+        assertEquals(2, governor.getLimit());
+        permit.polled(true);
+        assertEquals(1, governor.getLimit());
+        permit.release();
+        assertEquals(1, governor.getLimit());
+    }
+
+    @Test
+    public void testAcquireBlocksAtLimit() throws InterruptedException {
+        final SearchGovernor governor = new SearchGovernor(1);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        SearchGovernor.Permit permit = governor.acquire();
+        Thread waiter = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        governor.acquire().release();
+                        acquired.countDown();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+
+        waiter.start();
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        permit.release();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SplunkCheckpointStoreTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("checkpoints", ".properties");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testWatermarkPersistedOnCommit() {
+        SplunkCheckpointStore store = new SplunkCheckpointStore(file, 300, 1800, 100);
+
+        assertEquals(10000 - 1800, store.getSearchStart("search index=a", 10000));
+        store.stage("search index=a", 10000);
+        assertEquals(20000 - 1800, new SplunkCheckpointStore(file, 300, 1800, 100).getSearchStart("search index=a", 20000));
+        store.commit();
+        store = new SplunkCheckpointStore(file, 300, 1800, 100);
+        assertEquals(10000 - 300, store.getSearchStart("search index=a", 20000));
+        assertEquals(20000 - 1800, store.getSearchStart("search index=b", 20000));
+    }
+
+    @Test
+    public void testSearchStartAlignedToSpan() {
+        SplunkCheckpointStore store = new SplunkCheckpointStore(file, 300, 1800, 600);
+
+        assertEquals(18000, store.getSearchStart("search index=a", 20000));
+        store.stage("search index=a", 10000);
+        store.commit();
+        assertEquals(9600, store.getSearchStart("search index=a", 20000));
+        assertEquals(9600, store.getSearchStart("search index=a", 9650));
+        assertEquals(-1200, new SplunkCheckpointStore(file, 300, 1800, 600).getSearchStart("search index=b", 1000));
+    }
+
+    @Test
+    public void testRemoveTimeModifiers() {
+        assertEquals("search index=_audit | stats count by earliest=x",
+            SplunkCheckpointStore.removeTimeModifiers("search earliest=-30m@m index=_audit latest=now | stats count by earliest=x"));
+        assertEquals("search index=a", SplunkCheckpointStore.removeTimeModifiers("search index=a EARLIEST=\"10/01/2016:00:00:00\""));
+        assertEquals("| tstats count", SplunkCheckpointStore.removeTimeModifiers("| tstats count earliest=-1h"));
+        assertEquals("index=a", SplunkCheckpointStore.removeTimeModifiers("earliest=-1h index=a"));
+    }
+
+    @Test
+    public void testRemoveTimeModifiersPreservesQuotedTerms() {
+        assertEquals("search \"foo  bar\" index=a  | eval x=\"a  b\"",
+            SplunkCheckpointStore.removeTimeModifiers("search \"foo  bar\" earliest=-1h index=a  | eval x=\"a  b\""));
+        assertEquals("search \"x earliest=-1h\"", SplunkCheckpointStore.removeTimeModifiers("search \"x earliest=-1h\" latest=now"));
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
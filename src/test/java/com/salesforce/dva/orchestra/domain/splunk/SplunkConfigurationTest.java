@@ -90,5 +90,64 @@ public class SplunkConfigurationTest {
         assertTrue(tagMapping.containsKey("1"));
         assertEquals("1", tagMapping.get("1"));
     }
+
+    @Test
+    public void testExecutionMode() {
+        Properties props = new Properties();
+
+        props.setProperty(Parameter.QUERY.name().toLowerCase(), "select something from somewhere");
+        assertEquals(SplunkConfiguration.ExecutionMode.NORMAL, new SplunkConfiguration(props).getExecutionMode());
+        props.setProperty(Parameter.EXECUTION_MODE.name().toLowerCase(), "Export");
+        assertEquals(SplunkConfiguration.ExecutionMode.EXPORT, new SplunkConfiguration(props).getExecutionMode());
+    }
+
+    @Test
+    public void testExecutionModeOfIteration() {
+        Properties props = new Properties();
+
+        props.setProperty(Parameter.QUERY.name().toLowerCase(), "{0}");
+        props.setProperty("param.0", "\"small\",\"large\"");
+        props.setProperty(Parameter.EXECUTION_MODE.name().toLowerCase(), "oneshot");
+        props.setProperty(Parameter.EXECUTION_MODE.name().toLowerCase() + ".1", "export");
+
+        SplunkConfiguration config = new SplunkConfiguration(props);
+
+        assertEquals(SplunkConfiguration.ExecutionMode.ONESHOT, config.getExecutionMode(0));
+        assertEquals(SplunkConfiguration.ExecutionMode.EXPORT, config.getExecutionMode(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedExecutionMode() {
+        Properties props = new Properties();
+
+        props.setProperty(Parameter.QUERY.name().toLowerCase(), "select something from somewhere");
+        props.setProperty(Parameter.EXECUTION_MODE.name().toLowerCase(), "blocking");
+        new SplunkConfiguration(props).getExecutionMode();
+    }
+
+    @Test
+    public void testParserConfiguration() {
+        Properties props = new Properties();
+
+        props.setProperty(Parameter.QUERY.name().toLowerCase(), "select something from somewhere");
+        props.setProperty("tag.host", "host");
+
+        String description = new SplunkConfiguration(props).getParserConfiguration();
+
+        props.setProperty(Parameter.WORKER_COUNT.name().toLowerCase(), "5");
+        assertEquals(description, new SplunkConfiguration(props).getParserConfiguration());
+        props.setProperty("tag.host", "server");
+        assertFalse(description.equals(new SplunkConfiguration(props).getParserConfiguration()));
+    }
+
+    @Test
+    public void testOutputMode() {
+        Properties props = new Properties();
+
+        props.setProperty(Parameter.QUERY.name().toLowerCase(), "select something from somewhere");
+        assertEquals(SplunkConfiguration.OutputMode.XML, new SplunkConfiguration(props).getOutputMode());
+        props.setProperty(Parameter.OUTPUT_MODE.name().toLowerCase(), "json");
+        assertEquals(SplunkConfiguration.OutputMode.JSON, new SplunkConfiguration(props).getOutputMode());
+    }
 }
 /* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
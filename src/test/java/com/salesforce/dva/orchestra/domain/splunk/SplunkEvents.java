@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.splunk.Event;
+import com.splunk.ResultsReader;
+import com.splunk.ResultsReaderCsv;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+/**
+ * Builds Splunk events and result sets for tests. Events cannot be constructed directly, so they are read from a single row CSV result set in the
+ * same way the service reads empty result sets.
+ *
+ * @author  Tom Valine (tvaline@salesforce.com)
+ */
+final class SplunkEvents {
+
+    //~ Constructors *********************************************************************************************************************************
+
+    /* Private constructor to prevent instantiation. */
+    private SplunkEvents() {
+        assert (false) : "This class should never be instantiated.";
+    }
+
+    //~ Methods **************************************************************************************************************************************
+
+    /**
+     * Creates an event.
+     *
+     * @param   fields  Alternating field names and values. Fields having a null value are omitted from the event.
+     *
+     * @return  The event.
+     */
+    static Event of(String... fields) {
+        try(ResultsReader reader = results(fields)) {
+            Iterator<Event> events = reader.iterator();
+
+            return events.next();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Creates a result set containing a single event.
+     *
+     * @param   fields  Alternating field names and values. Fields having a null value are omitted from the event.
+     *
+     * @return  The result set. The caller is responsible for closing it.
+     */
+    static ResultsReader results(String... fields) {
+        StringBuilder header = new StringBuilder();
+        StringBuilder row = new StringBuilder();
+
+        for (int i = 0; i < fields.length; i += 2) {
+            if (fields[i + 1] != null) {
+                if (header.length() > 0) {
+                    header.append(',');
+                    row.append(',');
+                }
+                header.append(_quote(fields[i]));
+                row.append(_quote(fields[i + 1]));
+            }
+        }
+
+        byte[] csv = (header + "\n" + row + "\n").getBytes(Charset.forName("UTF-8"));
+
+        try {
+            return new ResultsReaderCsv(new ByteArrayInputStream(csv));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String _quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
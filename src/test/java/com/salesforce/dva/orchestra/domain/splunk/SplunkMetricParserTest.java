@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.Parameter;
+import com.splunk.Event;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class SplunkMetricParserTest {
+
+    private static SplunkMetricParser _parser(int seriesWindow, int datapointWindow, String... extraProperties) {
+        Properties props = new Properties();
+
+        props.setProperty(Parameter.QUERY.name().toLowerCase(), "search");
+        props.setProperty(Parameter.SCOPE.name().toLowerCase(), "$key.0$");
+        props.setProperty(Parameter.METRIC_SERIES_WINDOW.name().toLowerCase(), String.valueOf(seriesWindow));
+        props.setProperty(Parameter.METRIC_DATAPOINT_WINDOW.name().toLowerCase(), String.valueOf(datapointWindow));
+        props.setProperty("key.0", "host");
+        props.setProperty("metric.count", "count");
+        for (int i = 0; i < extraProperties.length; i += 2) {
+            props.setProperty(extraProperties[i], extraProperties[i + 1]);
+        }
+        return new SplunkMetricParser(new SplunkConfiguration(props));
+    }
+
+    private static Event _event(String host, int minute, String count) {
+        return SplunkEvents.of("host", host, "time", String.format("01/01/2016 00:%02d:00", minute), "count", count);
+    }
+
+    private static SplunkParser.Sink<Metric> _sink(final List<Metric> emitted) {
+        return new SplunkParser.Sink<Metric>() {
+
+                @Override
+                public void put(Metric entity) {
+                    emitted.add(entity);
+                }
+            };
+    }
+
+    @Test
+    public void testSeriesEmittedWhenDatapointWindowFills() throws InterruptedException {
+        List<Metric> emitted = new ArrayList<>();
+        SplunkParser.Accumulator accumulator = _parser(10, 2).accumulate(Arrays.asList("p"), _sink(emitted));
+
+        accumulator.accept(_event("a", 0, "1"));
+        assertTrue(emitted.isEmpty());
+        accumulator.accept(_event("a", 1, "2"));
+        assertEquals(1, emitted.size());
+        assertEquals(2, emitted.get(0).getDatapoints().size());
+        accumulator.accept(_event("a", 2, "3"));
+        accumulator.finish();
+        assertEquals(2, emitted.size());
+        assertEquals("a", emitted.get(1).getScope());
+        assertEquals(1, emitted.get(1).getDatapoints().size());
+    }
+
+    @Test
+    public void testOldestSeriesEmittedWhenSeriesWindowFills() throws InterruptedException {
+        List<Metric> emitted = new ArrayList<>();
+        SplunkParser.Accumulator accumulator = _parser(2, 10).accumulate(Arrays.asList("p"), _sink(emitted));
+
+        accumulator.accept(_event("a", 0, "1"));
+        accumulator.accept(_event("b", 0, "1"));
+        accumulator.accept(_event("a", 1, "2"));
+        assertTrue(emitted.isEmpty());
+        accumulator.accept(_event("c", 0, "1"));
+        assertEquals(1, emitted.size());
+        assertEquals("a", emitted.get(0).getScope());
+        assertEquals(2, emitted.get(0).getDatapoints().size());
+        accumulator.finish();
+        assertEquals(3, emitted.size());
+        assertEquals("b", emitted.get(1).getScope());
+        assertEquals("c", emitted.get(2).getScope());
+    }
+
+    @Test
+    public void testMissingValuesAreSkipped() throws InterruptedException {
+        List<Metric> emitted = new ArrayList<>();
+        SplunkParser.Accumulator accumulator = _parser(10, 10).accumulate(Arrays.asList("p"), _sink(emitted));
+
+        accumulator.accept(_event("a", 0, null));
+        accumulator.finish();
+        assertTrue(emitted.isEmpty());
+    }
+
+    @Test
+    public void testValuesAreCoerced() throws InterruptedException {
+        List<Metric> emitted = new ArrayList<>();
+        SplunkParser.Accumulator accumulator = _parser(10, 10).accumulate(Arrays.asList("p"), _sink(emitted));
+
+        accumulator.accept(_event("a", 0, " 1.50 "));
+        accumulator.accept(_event("a", 1, "2.0"));
+        accumulator.accept(_event("a", 2, "-.5e1"));
+        accumulator.accept(_event("a", 3, "+7."));
+        accumulator.finish();
+        assertEquals(Arrays.asList("1.5", "2", "-5", "7"), new ArrayList<>(emitted.get(0).getDatapoints().values()));
+    }
+
+    @Test
+    public void testInvalidValuesAreDroppedByDefault() throws InterruptedException {
+        List<Metric> emitted = new ArrayList<>();
+        SplunkParser.Accumulator accumulator = _parser(10, 10).accumulate(Arrays.asList("p"), _sink(emitted));
+
+        accumulator.accept(_event("a", 0, "n/a"));
+        accumulator.accept(_event("a", 1, "Infinity"));
+        accumulator.accept(_event("a", 2, "3"));
+        accumulator.accept(_event("a", 3, "3f"));
+        accumulator.accept(_event("a", 4, "1d"));
+        accumulator.accept(_event("a", 5, "0x10"));
+        accumulator.accept(_event("a", 6, "0x1p3"));
+        accumulator.accept(_event("a", 7, "1e400"));
+        accumulator.finish();
+        assertEquals(1, emitted.size());
+        assertEquals(1, emitted.get(0).getDatapoints().size());
+    }
+
+    @Test
+    public void testInvalidValuesAreZeroed() throws InterruptedException {
+        List<Metric> emitted = new ArrayList<>();
+        SplunkParser.Accumulator accumulator = _parser(10, 10, "invalid_value", "tag", "invalid.count", "zero").accumulate(Arrays.asList("p"),
+            _sink(emitted));
+
+        accumulator.accept(_event("a", 0, "NaN"));
+        accumulator.accept(_event("a", 1, "4"));
+        accumulator.finish();
+        assertEquals(1, emitted.size());
+        assertEquals(Arrays.asList("0", "4"), new ArrayList<>(emitted.get(0).getDatapoints().values()));
+    }
+
+    @Test
+    public void testInvalidValuesAreTagged() throws InterruptedException {
+        List<Metric> emitted = new ArrayList<>();
+        SplunkParser.Accumulator accumulator = _parser(10, 10, "invalid_value", "tag").accumulate(Arrays.asList("p"), _sink(emitted));
+
+        accumulator.accept(_event("a", 0, "bad"));
+        accumulator.accept(_event("a", 1, "4"));
+        accumulator.finish();
+        assertEquals(2, emitted.size());
+        assertEquals("true", emitted.get(0).getTag(SplunkMetricParser.INVALID_TAG));
+        assertEquals("0", emitted.get(0).getDatapoints().get(1451606400000L));
+        assertNull(emitted.get(1).getTag(SplunkMetricParser.INVALID_TAG));
+        assertEquals(1, emitted.get(1).getDatapoints().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedInvalidValuePolicy() {
+        _parser(10, 10, "invalid.count", "ignore");
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
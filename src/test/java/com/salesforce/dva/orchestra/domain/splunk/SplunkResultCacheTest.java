@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SplunkResultCacheTest {
+
+    private static final long MINUTE = 60000;
+    private static final long NOW = 1000 * MINUTE + 30000;
+    private static final List<String> PARAMS = Collections.emptyList();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("cache", "");
+        assertTrue(directory.delete());
+    }
+
+    @After
+    public void tearDown() {
+        _delete(directory);
+    }
+
+    private static void _delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (File child : files) {
+                _delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static Metric _metric(long... timestamps) {
+        Metric metric = new Metric("scope", "metric");
+        Map<Long, String> datapoints = new HashMap<>();
+
+        for (long timestamp : timestamps) {
+            datapoints.put(timestamp, String.valueOf(timestamp));
+        }
+        metric.setDatapoints(datapoints);
+        return metric;
+    }
+
+    private SplunkResultCache _cache(long maxBytes) {
+        return _cache(maxBytes, "{metric.count=count}");
+    }
+
+    private SplunkResultCache _cache(long maxBytes, String parserConfiguration) {
+        return _cache(maxBytes, Long.MAX_VALUE, parserConfiguration);
+    }
+
+    private SplunkResultCache _cache(long maxBytes, long maxDatapoints, String parserConfiguration) {
+        return new SplunkResultCache(directory, 30 * MINUTE, 10 * MINUTE, 10 * MINUTE, Long.MAX_VALUE / 2, maxBytes, maxDatapoints,
+            parserConfiguration);
+    }
+
+    private static SplunkParser.Sink<Metric> _discard() {
+        return new SplunkParser.Sink<Metric>() {
+
+                @Override
+                public void put(Metric entity) { }
+            };
+    }
+
+    @Test
+    public void testSettledBucketsAreReplayed() throws InterruptedException {
+        SplunkResultCache cache = _cache(Long.MAX_VALUE);
+        SplunkResultCache.Lookup lookup = cache.lookup("search", PARAMS, NOW);
+        final List<Metric> emitted = new ArrayList<>();
+
+        assertTrue(lookup.getCached().isEmpty());
+        assertEquals(970 * MINUTE, lookup.getSearchStart());
+        assertEquals(NOW, lookup.getSearchEnd());
+        lookup.record(new SplunkParser.Sink<Metric>() {
+
+                    @Override
+                    public void put(Metric entity) {
+                        emitted.add(entity);
+                    }
+                }).put(_metric(971 * MINUTE, 985 * MINUTE, 995 * MINUTE));
+        assertEquals(1, emitted.size());
+        lookup.commit();
+        lookup = cache.lookup("search", PARAMS, NOW + 5 * MINUTE);
+        assertEquals(990 * MINUTE, lookup.getSearchStart());
+        assertEquals(2, lookup.getCached().size());
+
+        Map<Long, String> datapoints = new HashMap<>();
+
+        for (Metric metric : lookup.getCached()) {
+            datapoints.putAll(metric.getDatapoints());
+        }
+        assertEquals(2, datapoints.size());
+        assertTrue(datapoints.containsKey(971 * MINUTE));
+        assertTrue(datapoints.containsKey(985 * MINUTE));
+        assertEquals(970 * MINUTE, cache.lookup("other search", PARAMS, NOW).getSearchStart());
+    }
+
+    @Test
+    public void testEmptyBucketsAreCached() {
+        SplunkResultCache cache = _cache(Long.MAX_VALUE);
+
+        cache.lookup("search", PARAMS, NOW).commit();
+
+        SplunkResultCache.Lookup lookup = cache.lookup("search", PARAMS, NOW);
+
+        assertEquals(990 * MINUTE, lookup.getSearchStart());
+        assertTrue(lookup.getCached().isEmpty());
+    }
+
+    @Test
+    public void testEvictionBoundsSize() throws InterruptedException {
+        SplunkResultCache.Lookup lookup = _cache(1).lookup("search", PARAMS, NOW);
+
+        lookup.record(_discard()).put(_metric(971 * MINUTE, 985 * MINUTE));
+        lookup.commit();
+        assertEquals(970 * MINUTE, _cache(1).lookup("search", PARAMS, NOW).getSearchStart());
+    }
+
+    @Test
+    public void testOversizedResultsAreNotCached() throws InterruptedException {
+        SplunkResultCache cache = _cache(Long.MAX_VALUE, 2, "{metric.count=count}");
+        SplunkResultCache.Lookup lookup = cache.lookup("search", PARAMS, NOW);
+        SplunkParser.Sink<Metric> sink = lookup.record(_discard());
+
+        sink.put(_metric(971 * MINUTE, 985 * MINUTE));
+        sink.put(_metric(972 * MINUTE));
+        lookup.commit();
+        assertEquals(970 * MINUTE, cache.lookup("search", PARAMS, NOW).getSearchStart());
+        lookup = cache.lookup("search", PARAMS, NOW);
+        lookup.record(_discard()).put(_metric(971 * MINUTE, 985 * MINUTE));
+        lookup.commit();
+        assertEquals(990 * MINUTE, cache.lookup("search", PARAMS, NOW).getSearchStart());
+    }
+
+    @Test
+    public void testKeyIncludesParserConfigurationAndParameters() {
+        _cache(Long.MAX_VALUE).lookup("search", PARAMS, NOW).commit();
+        assertEquals(990 * MINUTE, _cache(Long.MAX_VALUE).lookup("search", PARAMS, NOW).getSearchStart());
+        assertEquals(970 * MINUTE, _cache(Long.MAX_VALUE, "{metric.count=total}").lookup("search", PARAMS, NOW).getSearchStart());
+        assertEquals(970 * MINUTE, _cache(Long.MAX_VALUE).lookup("search", Arrays.asList("a"), NOW).getSearchStart());
+    }
+
+    @Test
+    public void testKeyIgnoresTimeModifiers() {
+        _cache(Long.MAX_VALUE).lookup("search earliest=-1h index=a", PARAMS, NOW).commit();
+        assertEquals(990 * MINUTE, _cache(Long.MAX_VALUE).lookup("search index=a latest=now", PARAMS, NOW).getSearchStart());
+    }
+
+    @Test
+    public void testCachedMetricsRetainDisplayNameAndUnits() throws InterruptedException {
+        SplunkResultCache.Lookup lookup = _cache(Long.MAX_VALUE).lookup("search", PARAMS, NOW);
+        Metric metric = _metric(971 * MINUTE);
+
+        metric.setDisplayName("Requests");
+        metric.setUnits("count");
+        lookup.record(_discard()).put(metric);
+        lookup.commit();
+
+        List<Metric> cached = _cache(Long.MAX_VALUE).lookup("search", PARAMS, NOW).getCached();
+
+        assertEquals(1, cached.size());
+        assertEquals("Requests", cached.get(0).getDisplayName());
+        assertEquals("count", cached.get(0).getUnits());
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.argus.entity.Metric;
+import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.ExecutionMode;
+import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.OutputMode;
+import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.Parameter;
+import com.splunk.Job;
+import com.splunk.ResultsReader;
+import com.splunk.Service;
+import com.splunk.ServiceArgs;
+import org.junit.Test;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+public class SplunkWorkerTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private final SplunkService service = new SplunkService(new SplunkSessionPool(new Service(new ServiceArgs()), new ServiceArgs()), 1000,
+        new PollSchedule(1, 1, 1), OutputMode.CSV) {
+
+            @Override
+            public ResultsReader oneshot(String query) {
+                calls.add("oneshot " + query);
+                return _results();
+            }
+
+            @Override
+            public ResultsReader export(String query) {
+                calls.add("export " + query);
+                return _results();
+            }
+
+            @Override
+            public Job dispatch(String query) throws IOException {
+                calls.add("dispatch " + query);
+                throw new IOException("Jobs are not supported by this service.");
+            }
+        };
+
+    private static ResultsReader _results() {
+        return SplunkEvents.results("host", "web01", "time", "01/01/2016 00:00:00", "count", "7");
+    }
+
+    private List<Metric> _call(ExecutionMode mode) {
+        Properties props = new Properties();
+
+        props.setProperty(Parameter.QUERY.name().toLowerCase(), "search index=a");
+        props.setProperty(Parameter.SCOPE.name().toLowerCase(), "$key.0$");
+        props.setProperty("key.0", "host");
+        props.setProperty("metric.count", "count");
+
+        Queue<Metric> queue = new LinkedList<>();
+        List<SplunkWorker.Target<?>> targets = Collections.<SplunkWorker.Target<?>>singletonList(new SplunkWorker.Target<>(
+                new SplunkMetricParser(new SplunkConfiguration(props)), queue));
+        SplunkResultPager pager = new SplunkResultPager(service, 0, 1);
+
+        try {
+            assertTrue(new SplunkWorker(service, pager, new SearchGovernor(1), mode, "search index=a", Arrays.asList("a"), targets, null).call());
+        } finally {
+            pager.close();
+        }
+        return new ArrayList<>(queue);
+    }
+
+    @Test
+    public void testOneshotExecution() {
+        List<Metric> metrics = _call(ExecutionMode.ONESHOT);
+
+        assertEquals(Arrays.asList("oneshot search index=a"), calls);
+        assertEquals(1, metrics.size());
+        assertEquals("web01", metrics.get(0).getScope());
+        assertEquals("7", metrics.get(0).getDatapoints().get(1451606400000L));
+    }
+
+    @Test
+    public void testExportExecution() {
+        List<Metric> metrics = _call(ExecutionMode.EXPORT);
+
+        assertEquals(Arrays.asList("export search index=a"), calls);
+        assertEquals(1, metrics.size());
+        assertEquals("web01", metrics.get(0).getScope());
+        assertEquals("7", metrics.get(0).getDatapoints().get(1451606400000L));
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.OrchestraException;
+import com.splunk.Event;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SubstitutionTemplateTest {
+
+    private static final List<String> PARAMS = Arrays.asList("pod1", "na$1");
+
+    private static Map<String, String> _keys() {
+        Map<String, String> keys = new HashMap<>();
+
+        keys.put("0", "host");
+        keys.put("1", "dc");
+        return keys;
+    }
+
+    private static Event _event() {
+        return SplunkEvents.of("host", "web\\01", "dc", "was");
+    }
+
+    @Test
+    public void testRenderSubstitutesParametersAndKeys() {
+        SubstitutionTemplate template = new SubstitutionTemplate("$param.0$.$key.1$.$key.0$:$param.1$", _keys());
+
+        assertEquals("pod1.was.web\\01:na$1", template.render(_event(), PARAMS, new StringBuilder()));
+    }
+
+    @Test
+    public void testRenderLeavesUnresolvedReferences() {
+        SubstitutionTemplate template = new SubstitutionTemplate("$param.2$.$key.5$.$other.0$.$key.0$", _keys());
+
+        assertEquals("$param.2$.$key.5$.$other.0$.web\\01", template.render(_event(), PARAMS, new StringBuilder()));
+    }
+
+    @Test
+    public void testRenderReusesBuffer() {
+        SubstitutionTemplate template = new SubstitutionTemplate("scope.$key.1$", _keys());
+        StringBuilder buffer = new StringBuilder("stale");
+
+        assertEquals("scope.was", template.render(_event(), PARAMS, buffer));
+        assertEquals("scope.was", template.render(_event(), PARAMS, buffer));
+    }
+
+    @Test
+    public void testRenderLiteral() {
+        SubstitutionTemplate template = new SubstitutionTemplate("static.scope", Collections.<String, String>emptyMap());
+
+        assertEquals("static.scope", template.render(_event(), PARAMS, new StringBuilder()));
+    }
+
+    @Test(expected = OrchestraException.class)
+    public void testRenderMissingKeyValue() {
+        new SubstitutionTemplate("$key.0$", _keys()).render(SplunkEvents.of("other", "x"), PARAMS, new StringBuilder());
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.domain.splunk;
+
+import com.salesforce.dva.orchestra.OrchestraException;
+import com.salesforce.dva.orchestra.domain.splunk.SplunkConfiguration.TimestampFormat;
+import org.junit.Test;
+import java.text.SimpleDateFormat;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class TimestampParserTest {
+
+    @Test
+    public void testParseDateTimeMatchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat formatter = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
+        TimestampParser parser = new TimestampParser(TimestampFormat.DATETIME);
+        Random random = new Random(7);
+
+        formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (int i = 0; i < 10000; i++) {
+            String text = formatter.format(random.nextLong() % 8000000000000L);
+
+            assertEquals(text, formatter.parse(text).getTime(), parser.parse(text));
+        }
+    }
+
+    @Test
+    public void testParseDateTime() {
+        TimestampParser parser = new TimestampParser(TimestampFormat.DATETIME);
+
+        assertEquals(0L, parser.parse("01/01/1970 00:00:00"));
+        assertEquals(951782400000L, parser.parse("02/29/2000 00:00:00"));
+        assertEquals(1473811261000L, parser.parse("9/14/2016 0:01:01"));
+        assertEquals(1473811261000L, parser.parse("9/14/2016 0:01:01"));
+    }
+
+    @Test
+    public void testParseEpoch() {
+        TimestampParser parser = new TimestampParser(TimestampFormat.EPOCH);
+
+        assertEquals(1473811200000L, parser.parse("1473811200"));
+        assertEquals(1473811200500L, parser.parse("1473811200.5"));
+        assertEquals(1473811200123L, parser.parse("1473811200.123456"));
+        assertEquals(-1500L, parser.parse("-1.5"));
+    }
+
+    @Test(expected = OrchestraException.class)
+    public void testParseInvalidDate() {
+        new TimestampParser(TimestampFormat.DATETIME).parse("02/30/2016 00:00:00");
+    }
+
+    @Test(expected = OrchestraException.class)
+    public void testParseTrailingCharacters() {
+        new TimestampParser(TimestampFormat.DATETIME).parse("09/14/2016 00:00:00Z");
+    }
+
+    @Test(expected = OrchestraException.class)
+    public void testParseInvalidEpoch() {
+        new TimestampParser(TimestampFormat.EPOCH).parse("14738x1200");
+    }
+
+    @Test(expected = OrchestraException.class)
+    public void testParseMissing() {
+        new TimestampParser(TimestampFormat.EPOCH).parse(null);
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
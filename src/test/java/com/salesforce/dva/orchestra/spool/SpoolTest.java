@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.spool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpoolTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("spool", "");
+        assertTrue(directory.delete());
+    }
+
+    @After
+    public void tearDown() {
+        _delete(directory);
+    }
+
+    private static void _delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (File child : files) {
+                _delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testUnacknowledgedRecordsAreRecovered() throws IOException {
+        try(Spool spool = new Spool(directory, 64)) {
+            assertTrue(spool.getRecovered().isEmpty());
+            spool.acknowledge(spool.append((byte) 1, "first".getBytes("UTF-8")));
+            spool.append((byte) 2, "second".getBytes("UTF-8"));
+            spool.append((byte) 3, new byte[100]);
+        }
+        try(Spool spool = new Spool(directory, 64)) {
+            List<Spool.Record> recovered = spool.getRecovered();
+
+            assertEquals(2, recovered.size());
+            assertEquals(2, recovered.get(0).getKind());
+            assertEquals("second", new String(recovered.get(0).getPayload(), "UTF-8"));
+            assertEquals(3, recovered.get(1).getKind());
+            assertEquals(100, recovered.get(1).getPayload().length);
+            for (Spool.Record record : recovered) {
+                spool.acknowledge(record);
+            }
+        }
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsAreDeleted() throws IOException {
+        try(Spool spool = new Spool(directory, 32)) {
+            Spool.Record first = spool.append((byte) 1, new byte[20]);
+            Spool.Record second = spool.append((byte) 1, new byte[20]);
+
+            assertEquals(3, directory.listFiles().length);
+            spool.acknowledge(first);
+            assertEquals(2, directory.listFiles().length);
+            spool.acknowledge(second);
+        }
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        try(Spool spool = new Spool(directory, 1024)) {
+            spool.append((byte) 1, "intact".getBytes("UTF-8"));
+            spool.append((byte) 1, "torn".getBytes("UTF-8"));
+        }
+        for (File file : directory.listFiles()) {
+            if (file.getName().startsWith("segment-")) {
+                try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.seek(SpoolSegment.RECORD_HEADER + 6 + SpoolSegment.RECORD_HEADER);
+                    raf.write('x');
+                }
+            }
+        }
+        try(Spool spool = new Spool(directory, 1024)) {
+            assertEquals(1, spool.getRecovered().size());
+            assertEquals("intact", new String(spool.getRecovered().get(0).getPayload(), "UTF-8"));
+        }
+    }
+
+    @Test
+    public void testDeadLettersAreNotRecovered() throws IOException {
+        try(Spool spool = new Spool(directory, 1024)) {
+            spool.append((byte) 1, "kept".getBytes("UTF-8"));
+            spool.append((byte) 2, "dead".getBytes("UTF-8"));
+        }
+        try(Spool spool = new Spool(directory, 1024)) {
+            spool.deadLetter(spool.getRecovered().get(1));
+        }
+
+        File[] deadLetters = new File(directory, "dead-letters").listFiles();
+
+        assertEquals(1, deadLetters.length);
+        try(Spool spool = new Spool(directory, 1024)) {
+            assertEquals(1, spool.getRecovered().size());
+            assertEquals("kept", new String(spool.getRecovered().get(0).getPayload(), "UTF-8"));
+            assertTrue(deadLetters[0].renameTo(new File(directory, deadLetters[0].getName())));
+        }
+        try(Spool spool = new Spool(directory, 1024)) {
+            assertEquals(2, spool.getRecovered().size());
+            assertEquals(2, spool.getRecovered().get(1).getKind());
+            assertEquals("dead", new String(spool.getRecovered().get(1).getPayload(), "UTF-8"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testDirectoryIsLocked() throws IOException {
+        Spool spool = new Spool(directory, 1024);
+
+        try {
+            new Spool(directory, 1024);
+        } finally {
+            spool.close();
+        }
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dva.orchestra.util;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BoundedQueueTest {
+
+    private static final BoundedQueue.Weigher<String> LENGTH_WEIGHER = new BoundedQueue.Weigher<String>() {
+
+            @Override
+            public long weigh(String element) {
+                return element.length();
+            }
+        };
+
+    @Test
+    public void testCapacityBound() {
+        BoundedQueue<String> queue = new BoundedQueue<>(2, 100, LENGTH_WEIGHER, false);
+
+        assertTrue(queue.offer("a"));
+        assertTrue(queue.offer("b"));
+        assertFalse(queue.offer("c"));
+        assertEquals(0, queue.remainingCapacity());
+        assertEquals("a", queue.poll());
+        assertTrue(queue.offer("c"));
+    }
+
+    @Test
+    public void testWeightBound() {
+        BoundedQueue<String> queue = new BoundedQueue<>(10, 5, LENGTH_WEIGHER, false);
+
+        assertTrue(queue.offer("aaa"));
+        assertFalse(queue.offer("bbb"));
+        assertTrue(queue.offer("bb"));
+        assertEquals(5, queue.getWeight());
+
+        List<String> drained = new ArrayList<>();
+
+        assertEquals(2, queue.drainTo(drained));
+        assertEquals(0, queue.getWeight());
+    }
+
+    @Test
+    public void testOversizedElementAcceptedWhenEmpty() {
+        BoundedQueue<String> queue = new BoundedQueue<>(10, 5, LENGTH_WEIGHER, false);
+
+        assertTrue(queue.offer("aaaaaaaaaa"));
+        assertFalse(queue.offer("a"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddToFullNonBlockingQueue() {
+        BoundedQueue<String> queue = new BoundedQueue<>(1, 100, LENGTH_WEIGHER, false);
+
+        queue.add("a");
+        queue.add("b");
+    }
+
+    @Test
+    public void testNullElementsAreRejected() throws InterruptedException {
+        BoundedQueue<String> queue = new BoundedQueue<>(1, 100, LENGTH_WEIGHER, false);
+
+        try {
+            queue.add(null);
+            fail("Expected add to reject a null element.");
+        } catch (NullPointerException ex) {
+            assertTrue(queue.isEmpty());
+        }
+        try {
+            queue.offer(null);
+            fail("Expected offer to reject a null element.");
+        } catch (NullPointerException ex) {
+            assertTrue(queue.isEmpty());
+        }
+        try {
+            queue.put(null);
+            fail("Expected put to reject a null element.");
+        } catch (NullPointerException ex) {
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testDrainToNullCollection() {
+        new BoundedQueue<>(1, 100, LENGTH_WEIGHER, false).drainTo(null);
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockingAddWaitsForSpace() throws InterruptedException {
+        final BoundedQueue<String> queue = new BoundedQueue<>(1, 100, LENGTH_WEIGHER, true);
+        final CountDownLatch added = new CountDownLatch(1);
+
+        queue.add("a");
+
+        Thread producer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    queue.add("b");
+                    added.countDown();
+                }
+            });
+
+        producer.start();
+        assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+        assertEquals("a", queue.take());
+        assertTrue(added.await(5, TimeUnit.SECONDS));
+        assertEquals("b", queue.poll(1, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test(timeout = 10000)
+    public void testInterruptedBlockingOffer() throws InterruptedException {
+        BoundedQueue<String> queue = new BoundedQueue<>(1, 100, LENGTH_WEIGHER, true);
+
+        queue.add("a");
+        Thread.currentThread().interrupt();
+        assertFalse(queue.offer("b"));
+        assertTrue(Thread.interrupted());
+        assertEquals(1, queue.size());
+    }
+}
+/* Copyright (c) 2016, Salesforce.com, Inc.  All rights reserved. */